@@ -36,6 +36,11 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The precomputed features of every card in the deck
+     */
+    public final FeatureTable featureTable;
+
     /**
      * The number of human players in the game.
      */
@@ -56,6 +61,31 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * Whether set searches over large decks should be split across all the cores (fork/join)
+     */
+    public final boolean parallelSearch;
+
+    /**
+     * Whether the dealer should choose the cards it deals so that there is a set on the table whenever possible
+     */
+    public final boolean guaranteeSet;
+
+    /**
+     * The average number of milliseconds a computer player takes to react to the table
+     */
+    public final long computerReactionMillis;
+
+    /**
+     * The standard deviation of the computer players' reaction times (normally distributed) in milliseconds
+     */
+    public final long computerReactionDeviationMillis;
+
+    /**
+     * The probability that a computer player picks random cards instead of a set (between 0 and 1)
+     */
+    public final double computerErrorRate;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -197,6 +227,7 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        featureTable = new FeatureTable(featureSize, featureCount);
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -204,6 +235,11 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        parallelSearch = Boolean.parseBoolean(properties.getProperty("ParallelSearch", "False"));
+        guaranteeSet = Boolean.parseBoolean(properties.getProperty("GuaranteeSet", "False"));
+        computerReactionMillis = (long) (Double.parseDouble(properties.getProperty("ComputerReactionSeconds", "0.5")) * 1000.0);
+        computerReactionDeviationMillis = (long) (Double.parseDouble(properties.getProperty("ComputerReactionDeviationSeconds", "0.2")) * 1000.0);
+        computerErrorRate = Double.parseDouble(properties.getProperty("ComputerErrorRate", "0.1"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
@@ -0,0 +1,199 @@
+package bguspl.set;
+
+/**
+ * A lookup table holding the features of every card in the deck, built once per configuration.
+ * The features of each card are packed into a single long, FEATURE_BITS bits per feature, so reading a feature is a
+ * shift and a mask instead of a div/mod loop.
+ *
+ * @inv feature(card, i) == the i-th digit (most significant first) of card in base featureSize
+ */
+public class FeatureTable {
+
+    /**
+     * The number of bits each feature takes in a packed card.
+     */
+    public static final int FEATURE_BITS = 4;
+
+    /**
+     * The mask of a single feature in a packed card.
+     */
+    public static final long FEATURE_MASK = (1L << FEATURE_BITS) - 1;
+
+    /**
+     * The number of features on the cards.
+     */
+    private final int featureCount;
+
+    /**
+     * The number of choices for each feature.
+     */
+    private final int featureSize;
+
+    /**
+     * The packed features of each card (feature i is stored in bits [i * FEATURE_BITS, (i + 1) * FEATURE_BITS) ).
+     */
+    private final long[] packed;
+
+    /**
+     * The features of each card as one-hot lanes: feature i with value v sets bit i * featureSize + v
+     * (null if the lanes of all features do not fit in a long).
+     */
+    private final long[] oneHot;
+
+    /**
+     * The lowest bit of every one-hot lane.
+     */
+    private final long laneLowBits;
+
+    /**
+     * The value of feature i in the card id (i.e. featureSize ^ (featureCount - 1 - i)).
+     */
+    private final int[] weights;
+
+    public FeatureTable(int featureSize, int featureCount) {
+        if (featureSize > FEATURE_MASK + 1 || featureCount * FEATURE_BITS > Long.SIZE)
+            throw new IllegalArgumentException("cannot pack " + featureCount + " features of size " + featureSize);
+
+        this.featureCount = featureCount;
+        this.featureSize = featureSize;
+
+        weights = new int[featureCount];
+        for (int i = featureCount - 1, weight = 1; i >= 0; --i, weight *= featureSize)
+            weights[i] = weight;
+
+        packed = new long[(int) Math.pow(featureSize, featureCount)];
+        for (int card = 0; card < packed.length; ++card) {
+            long features = 0;
+            for (int i = 0; i < featureCount; ++i)
+                features |= (long) (card / weights[i] % featureSize) << (i * FEATURE_BITS);
+            packed[card] = features;
+        }
+
+        long lowBits = 0;
+        if (featureCount * featureSize <= Long.SIZE) {
+            for (int i = 0; i < featureCount; ++i)
+                lowBits |= 1L << (i * featureSize);
+            oneHot = new long[packed.length];
+            for (int card = 0; card < packed.length; ++card)
+                for (int i = 0; i < featureCount; ++i)
+                    oneHot[card] |= 1L << (i * featureSize + feature(card, i));
+        } else oneHot = null;
+        laneLowBits = lowBits;
+    }
+
+    /**
+     * Returns the packed features of a card.
+     *
+     * @param card - the card id.
+     * @return - the features of the card, FEATURE_BITS bits per feature.
+     */
+    public long packed(int card) {
+        return packed[card];
+    }
+
+    /**
+     * Returns a single feature of a card.
+     *
+     * @param card    - the card id.
+     * @param feature - the feature index (between 0 and featureCount - 1).
+     * @return - the value of the feature (between 0 and featureSize - 1).
+     */
+    public int feature(int card, int feature) {
+        return (int) (packed[card] >>> (feature * FEATURE_BITS) & FEATURE_MASK);
+    }
+
+    /**
+     * Copies the features of a card into the given array (no allocation).
+     *
+     * @param card     - the card id.
+     * @param features - an array of at least featureCount values to fill.
+     */
+    public void features(int card, int[] features) {
+        long p = packed[card];
+        for (int i = 0; i < featureCount; ++i, p >>>= FEATURE_BITS)
+            features[i] = (int) (p & FEATURE_MASK);
+    }
+
+    /**
+     * Returns true iff the one-hot encoding is available (i.e. featureCount * featureSize <= 64).
+     */
+    public boolean hasOneHot() {
+        return oneHot != null;
+    }
+
+    /**
+     * Returns the one-hot encoded features of a card (one lane of featureSize bits per feature).
+     *
+     * @param card - the card id.
+     * @return - the one-hot lanes of the card.
+     * @pre - hasOneHot()
+     */
+    public long oneHot(int card) {
+        return oneHot[card];
+    }
+
+    /**
+     * Folds every one-hot lane onto its lowest bit.
+     *
+     * @param lanes - one-hot lanes (e.g. the AND of several cards).
+     * @return - a mask with bit i * featureSize set iff lane i of the given lanes is not zero.
+     */
+    public long nonZeroLanes(long lanes) {
+        long folded = lanes;
+        for (int k = 1; k < featureSize; ++k)
+            folded |= lanes >>> k;
+        return folded & laneLowBits;
+    }
+
+    /**
+     * Checks all features of a group of cards at once, given their one-hot lanes combined by the caller:
+     * a feature is legal iff it is the same in all cards (its lane in common is not zero) or it is different in all
+     * cards (no two cards collide in its lane).
+     *
+     * @param common     - the AND of the one-hot lanes of all cards.
+     * @param collisions - the lanes in which at least two cards share a value.
+     * @return - true iff every feature is either the same in all cards or different in all cards.
+     */
+    public boolean sameOrDifferent(long common, long collisions) {
+        return (nonZeroLanes(collisions) & ~nonZeroLanes(common)) == 0;
+    }
+
+    /**
+     * Returns the unique card that completes the two given cards to a legal set (for featureSize == 3 only).
+     * In each feature the third value is the one that makes the sum of the three values divisible by 3.
+     *
+     * @param a - the first card id.
+     * @param b - the second card id.
+     * @return - the id of the third card of the set.
+     */
+    public int thirdCard(int a, int b) {
+        long fa = packed[a], fb = packed[b];
+        int card = 0;
+        for (int i = 0; i < featureCount; ++i, fa >>>= FEATURE_BITS, fb >>>= FEATURE_BITS)
+            card += (int) ((6 - (fa & FEATURE_MASK) - (fb & FEATURE_MASK)) % 3) * weights[i];
+        return card;
+    }
+
+    /**
+     * Returns the value a feature adds to a card id.
+     *
+     * @param feature - the feature index.
+     * @return - featureSize ^ (featureCount - 1 - feature).
+     */
+    public int weight(int feature) {
+        return weights[feature];
+    }
+
+    /**
+     * Returns the name of a card, i.e. its features as digits (e.g. "0121"). Used for the card image file names.
+     *
+     * @param card - the card id.
+     * @return - the name of the card.
+     */
+    public String name(int card) {
+        char[] digits = new char[featureCount];
+        for (int i = 0; i < featureCount; ++i)
+            digits[i] = Character.forDigit(feature(card, i), featureSize);
+        return new String(digits);
+    }
+}
@@ -10,6 +10,7 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.*;
 
 /**
@@ -57,8 +58,10 @@ public class Main {
                 logger.severe("warning: running with human players with no user interface");
         }
         ui = new UserInterfaceDecorator(logger, util, ui);
+        if (config.tableDelayMillis > 0) ui = new UserInterfaceAnimator(logger, config, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        TimerWheel timers = new TimerWheel(logger);
+        Env env = new Env(logger, config, ui, util, timers);
 
         // create the game entities
         Table table = new Table(env);
@@ -73,12 +76,17 @@ public class Main {
         try {
             // shutdown stuff
             dealerThread.joinWithLog();
-            if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+            if (!xButtonPressed && config.endGamePauseMillies > 0) {
+                CountDownLatch pause = new CountDownLatch(1);
+                timers.schedule(pause::countDown, config.endGamePauseMillies);
+                pause.await();
+            }
             env.ui.dispose();
         } catch (InterruptedException ignored) {
         } finally {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
+            timers.stop();
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             for (Handler h : logger.getHandlers()) h.close();
         }
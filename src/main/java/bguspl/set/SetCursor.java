@@ -0,0 +1,180 @@
+package bguspl.set;
+
+/**
+ * A resumable enumeration of the legal sets in an array of cards: every call to advance() continues the search from
+ * where the previous one stopped, so sets can be consumed one at a time without collecting them first.
+ * For featureSize == 3 the completing third card of every pair is looked up in a presence bitmap (each set is reported
+ * once, by the pair of its two smallest card ids). Otherwise a depth-first search on the one-hot lanes of the cards
+ * backtracks as soon as some feature is neither the same in all chosen cards nor different in all of them.
+ */
+class SetCursor {
+
+    private final FeatureTable features;
+
+    /**
+     * The cards to search.
+     */
+    private final int[] cards;
+
+    /**
+     * The presence bitmap of the cards (featureSize == 3 only).
+     */
+    private final long[] present;
+
+    /**
+     * The positions of the first card of the reported sets are in [from, to).
+     */
+    private final int to;
+
+    /**
+     * The number of chosen cards that are fixed by the caller (0 or 1).
+     */
+    private final int base;
+
+    /**
+     * The cards of the current set (reused).
+     */
+    private final int[] chosen;
+
+    /**
+     * The next position to try at each depth of the search.
+     */
+    private final int[] position;
+
+    /**
+     * The AND / OR / collision one-hot lanes of chosen[0 .. depth] at each depth of the search.
+     */
+    private final long[] common;
+    private final long[] seen;
+    private final long[] collisions;
+
+    /**
+     * The current depth of the search (the number of chosen cards).
+     */
+    private int depth;
+
+    /**
+     * Creates a cursor over the sets whose first card (in the order of cards) is at a position in [from, to).
+     *
+     * @param features - the feature table of the game.
+     * @param setSize  - the number of cards in a set (i.e. featureSize).
+     * @param cards    - the cards to search (may not contain duplicates).
+     * @param present  - the presence bitmap of the cards (needed for setSize == 3 only).
+     */
+    SetCursor(FeatureTable features, int setSize, int[] cards, long[] present, int from, int to) {
+        this(features, setSize, cards, present, from, to, 0);
+    }
+
+    /**
+     * Creates a cursor over the sets made of the given card and cards from the array.
+     *
+     * @param card - a card that every reported set contains (and that is not in cards).
+     */
+    SetCursor(FeatureTable features, int setSize, int[] cards, long[] present, int card) {
+        this(features, setSize, cards, present, 0, cards.length, 1);
+        chosen[0] = card;
+        if (features.hasOneHot())
+            common[0] = seen[0] = features.oneHot(card);
+    }
+
+    private SetCursor(FeatureTable features, int setSize, int[] cards, long[] present, int from, int to, int base) {
+        this.features = features;
+        this.cards = cards;
+        this.present = present;
+        this.to = to;
+        this.base = base;
+
+        chosen = new int[setSize];
+        position = new int[setSize];
+        common = new long[setSize];
+        seen = new long[setSize];
+        collisions = new long[setSize];
+        depth = base;
+        position[base] = from;
+        if (base + 1 < setSize) position[base + 1] = from + 1;
+    }
+
+    /**
+     * Returns the cards of the current set. The array is reused by the next call to advance().
+     */
+    int[] set() {
+        return chosen;
+    }
+
+    /**
+     * Moves to the next set.
+     *
+     * @return - false iff there are no more sets.
+     */
+    boolean advance() {
+        return chosen.length == 3 ? advanceByThirdCard() : advanceBySearch();
+    }
+
+    private boolean isPresent(int card) {
+        return (present[card >>> 6] & 1L << card) != 0;
+    }
+
+    private boolean advanceByThirdCard() {
+        if (base == 1) {
+            while (position[1] < cards.length) {
+                int other = cards[position[1]++];
+                int third = features.thirdCard(chosen[0], other);
+                if (third > other && third != chosen[0] && isPresent(third)) {
+                    chosen[1] = other;
+                    chosen[2] = third;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        while (position[0] < to) {
+            int i = position[0];
+            while (position[1] < cards.length) {
+                int j = position[1]++;
+                int a = Math.min(cards[i], cards[j]), b = Math.max(cards[i], cards[j]);
+                int c = features.thirdCard(a, b);
+                if (c > b && isPresent(c)) {
+                    chosen[0] = a;
+                    chosen[1] = b;
+                    chosen[2] = c;
+                    return true;
+                }
+            }
+            position[0] = i + 1;
+            position[1] = i + 2;
+        }
+        return false;
+    }
+
+    private boolean advanceBySearch() {
+        int last = chosen.length - 1;
+        while (depth >= base) {
+            int limit = cards.length - last + depth;
+            if (depth == base) limit = Math.min(limit, to);
+            if (position[depth] >= limit) {
+                --depth; // backtrack
+                continue;
+            }
+
+            int i = position[depth]++;
+            long card = features.oneHot(cards[i]);
+            if (depth == 0) {
+                common[0] = seen[0] = card;
+                collisions[0] = 0;
+            } else {
+                long nextCommon = common[depth - 1] & card;
+                long nextCollisions = collisions[depth - 1] | seen[depth - 1] & card;
+                if (!features.sameOrDifferent(nextCommon, nextCollisions)) continue; // prune this branch
+                common[depth] = nextCommon;
+                seen[depth] = seen[depth - 1] | card;
+                collisions[depth] = nextCollisions;
+            }
+            chosen[depth] = cards[i];
+
+            if (depth == last) return true;
+            position[++depth] = i + 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,229 @@
+package bguspl.set;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timer wheel: a single thread that runs tasks at their deadlines, so nobody has to hold a thread while
+ * waiting. Time is split into ticks, each timeout is put in the bucket of the tick it expires in (wheelSize buckets
+ * cover wheelSize ticks, a longer timeout waits for more rounds), and every tick the thread runs the due timeouts of
+ * one bucket. Deadlines are rounded up to a whole tick. The thread is started by the first schedule and parks while
+ * there are no timeouts.
+ */
+public class TimerWheel {
+
+    /**
+     * The default length of a tick.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    /**
+     * The default number of buckets.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * A scheduled task that can be cancelled.
+     */
+    public static final class Timeout {
+
+        private final Runnable task;
+
+        /**
+         * The tick the task should run at.
+         */
+        private final long deadlineTick;
+
+        /**
+         * The number of full turns of the wheel left before the task runs (the wheel thread's only).
+         */
+        private long rounds;
+
+        /**
+         * The next timeout in the same bucket (the wheel thread's only).
+         */
+        private Timeout next;
+
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Keeps the task from running (if it did not run yet).
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final Logger logger;
+
+    private final long tickNanos;
+
+    /**
+     * The first timeout of each bucket (the wheel thread's only).
+     */
+    private final Timeout[] buckets;
+
+    private final int mask;
+
+    /**
+     * The timeouts that were scheduled and not put in a bucket yet.
+     */
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The time tick 0 started.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * The next tick to run (the wheel thread's only).
+     */
+    private long tick;
+
+    /**
+     * The number of timeouts in the buckets (the wheel thread's only).
+     */
+    private int size;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile Thread thread;
+
+    /**
+     * True iff the wheel thread is parked until something is scheduled.
+     */
+    private volatile boolean idle;
+
+    private volatile boolean stopped;
+
+    public TimerWheel(Logger logger) {
+        this(logger, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param logger     - the logger of the game.
+     * @param tickMillis - the length of a tick.
+     * @param wheelSize  - the number of buckets (rounded up to a power of 2).
+     */
+    public TimerWheel(Logger logger, long tickMillis, int wheelSize) {
+        this.logger = logger;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        buckets = new Timeout[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Runs a task on the wheel thread after the given delay. The task should be short (e.g. hand a message over).
+     *
+     * @param task        - the task to run.
+     * @param delayMillis - the delay (rounded up to a whole tick).
+     * @return - the timeout of the task.
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(task, (System.nanoTime() - startTime + delay + tickNanos - 1) / tickNanos);
+        added.add(timeout);
+        if (started.compareAndSet(false, true)) start();
+        else if (idle) LockSupport.unpark(thread);
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel thread. Tasks that did not run yet never will.
+     */
+    public void stop() {
+        stopped = true;
+        Thread thread = this.thread;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    private void start() {
+        ThreadLogger thread = new ThreadLogger(this::run, "timer", logger);
+        thread.setDaemon(true);
+        this.thread = thread;
+        thread.startWithLog();
+    }
+
+    /**
+     * The wheel thread starts here: runs one tick after the other.
+     */
+    private void run() {
+        while (!stopped) {
+            if (size == 0 && added.isEmpty()) {
+                idle = true;
+                if (added.isEmpty() && !stopped) LockSupport.park(this);
+                idle = false;
+                tick = Math.max(tick, currentTick()); // nothing was due meanwhile
+                continue;
+            }
+
+            waitForTick();
+            transferAdded();
+            expire(buckets[(int) tick & mask], (int) tick & mask);
+            ++tick;
+        }
+        ThreadLogger.logStop(logger, Thread.currentThread().getName());
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startTime) / tickNanos;
+    }
+
+    /**
+     * Waits until the current tick is over (i.e. its timeouts are due).
+     */
+    private void waitForTick() {
+        long end = startTime + (tick + 1) * tickNanos;
+        for (long left = end - System.nanoTime(); left > 0 && !stopped; left = end - System.nanoTime())
+            LockSupport.parkNanos(this, left);
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.cancelled) continue;
+            long deadline = Math.max(timeout.deadlineTick, tick); // a late timeout runs at the current tick
+            timeout.rounds = (deadline - tick) / buckets.length;
+            int bucket = (int) deadline & mask;
+            timeout.next = buckets[bucket];
+            buckets[bucket] = timeout;
+            ++size;
+        }
+    }
+
+    /**
+     * Runs the timeouts of the bucket that are due in this round, and drops the cancelled ones.
+     */
+    private void expire(Timeout first, int bucket) {
+        Timeout kept = null;
+        for (Timeout timeout = first, next; timeout != null; timeout = next) {
+            next = timeout.next;
+            if (!timeout.cancelled && timeout.rounds > 0) {
+                --timeout.rounds;
+                timeout.next = kept;
+                kept = timeout;
+                continue;
+            }
+
+            --size;
+            if (timeout.cancelled) continue;
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "timer task failed", e);
+            }
+        }
+        buckets[bucket] = kept;
+    }
+}
@@ -18,6 +18,19 @@ public interface UserInterface {
      */
     void removeCard(int slot);
 
+    /**
+     * Draw the card images of several cards at once (a single repaint).
+     * @param cards - the card ids.
+     * @param slots - the slot numbers, slots[i] is the slot of cards[i].
+     */
+    void placeCards(int[] cards, int[] slots);
+
+    /**
+     * Draw empty card images in several slots at once (a single repaint).
+     * @param slots - the slot numbers.
+     */
+    void removeCards(int[] slots);
+
     /**
      * Draw a player name text in the specified slot.
      * @param player - the card id.
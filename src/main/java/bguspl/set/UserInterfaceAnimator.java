@@ -0,0 +1,135 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * A user interface that replays the changes to the table grid (cards and tokens) on its own thread, pausing
+ * config.tableDelayMillis before each card is placed or removed. The callers (i.e. the dealer) return immediately,
+ * so the logical table is updated at once while the cards animate in at the configured pace.
+ * Changes that are not on the grid (timer, scores, freezes etc.) are passed through immediately.
+ */
+public class UserInterfaceAnimator implements UserInterface {
+
+    private final UserInterface ui;
+
+    private final long delayMillis;
+
+    /**
+     * The pending changes to the grid, in the order they were made.
+     */
+    private final BlockingQueue<Runnable> changes = new LinkedBlockingQueue<>();
+
+    private final ThreadLogger thread;
+
+    private volatile boolean terminate;
+
+    public UserInterfaceAnimator(Logger logger, Config config, UserInterface ui) {
+        this.ui = ui;
+        this.delayMillis = config.tableDelayMillis;
+
+        thread = new ThreadLogger(this::animate, "animator", logger);
+        thread.setDaemon(true);
+        thread.startWithLog();
+    }
+
+    /**
+     * The animator thread starts here: replays the grid changes one by one.
+     */
+    private void animate() {
+        while (!terminate) {
+            try {
+                changes.take().run();
+            } catch (InterruptedException ignored) {}
+        }
+    }
+
+    /**
+     * Queues a card change, to be replayed after the table delay.
+     */
+    private void animate(Runnable change) {
+        changes.add(() -> {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            change.run();
+        });
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        animate(() -> ui.placeCard(card, slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        animate(() -> ui.removeCard(slot));
+    }
+
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        for (int i = 0; i < cards.length; i++)
+            placeCard(cards[i], slots[i]);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        for (int slot : slots)
+            removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        changes.add(() -> ui.placeToken(player, slot));
+    }
+
+    @Override
+    public void removeTokens() {
+        changes.add(ui::removeTokens);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        changes.add(() -> ui.removeTokens(slot));
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        changes.add(() -> ui.removeToken(player, slot));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        ui.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        terminate = true;
+        thread.interrupt();
+        ui.dispose();
+    }
+}
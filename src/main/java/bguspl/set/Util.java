@@ -1,12 +1,26 @@
 package bguspl.set;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * An interface for general utilities provided for convenience.
  */
 public interface Util {
 
+    /**
+     * A callback that receives the sets found by forEachSet.
+     */
+    @FunctionalInterface
+    interface SetConsumer {
+
+        /**
+         * @param cards - the card ids of a legal set (reused by the next call, copy it to keep it).
+         * @return - true to continue the search, false to stop it.
+         */
+        boolean accept(int[] cards);
+    }
+
     /**
      * Converts a card id to an array of features (of config.featureCount values between 0 and config.featuresSize - 1)
      *
@@ -31,6 +45,25 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks if three cards form a legal set (without allocating).
+     *
+     * @param a - the first card id.
+     * @param b - the second card id.
+     * @param c - the third card id.
+     * @return - true iff the three cards form a legal set.
+     */
+    boolean testSet(int a, int b, int c);
+
+    /**
+     * Checks if config.featureSize consecutive cards of an array form a legal set (without allocating).
+     *
+     * @param cards  - an array of card ids.
+     * @param offset - the index of the first card to check.
+     * @return - true iff cards[offset .. offset + config.featureSize - 1] form a legal set.
+     */
+    boolean testSet(int[] cards, int offset);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +73,33 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds and returns up to count sets made of the given card and cards from the given collection.
+     *
+     * @param card  - a card id that every returned set must contain.
+     * @param deck  - a collection of other cards (may not include null objects or the card itself).
+     * @param count - the maximum number of sets to find.
+     * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    List<int[]> findSetsWith(int card, List<Integer> deck, int count);
+
+    /**
+     * Passes every set in the given collection of cards to the action, as soon as it is found.
+     *
+     * @param deck   - a collection of cards (may not include null objects).
+     * @param action - called with the card ids of each set (the array is reused between calls), returns false to stop.
+     */
+    void forEachSet(List<Integer> deck, SetConsumer action);
+
+    /**
+     * Returns a lazy stream of the sets in the given collection of cards: sets are searched for only as the stream is
+     * consumed, so short-circuiting operations (e.g. findFirst) stop the search.
+     *
+     * @param deck - a collection of cards (may not include null objects).
+     * @return - a stream of integer arrays, each one contains the sorted card ids of a legal set.
+     */
+    Stream<int[]> streamSets(List<Integer> deck);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
@@ -3,58 +3,109 @@ package bguspl.set;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.IntStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The implementation of the UserInterface interface.
  */
 public class UtilImpl implements Util {
 
+    /**
+     * The minimal number of cards for which a parallel search is worth its overhead.
+     */
+    private static final int PARALLEL_THRESHOLD = 128;
+
+    /**
+     * The number of first-card positions a single fork/join task searches without splitting.
+     */
+    private static final int PARALLEL_GRAIN = 4;
+
     private final Config config;
 
+    private final FeatureTable features;
+
     public UtilImpl(Config config) {
         this.config = config;
-    }
-
-    private void cardToFeatures(int card, int[] features) {
-        for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
-            card /= config.featureSize;
-        }
+        this.features = config.featureTable;
     }
 
     @Override
     public int[] cardToFeatures(int card) {
         int[] features = new int[config.featureCount];
-        cardToFeatures(card, features);
+        this.features.features(card, features);
         return features;
     }
 
     @Override
     public int[][] cardsToFeatures(int[] cards) {
         int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        for (int i = 0; i < cards.length; ++i)
+            this.features.features(cards[i], features[i]);
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        return testSet(cards, 0, cards.length);
+    }
+
+    @Override
+    public boolean testSet(int a, int b, int c) {
+        if (!features.hasOneHot()) return testSetByFeatures(new int[]{a, b, c}, 0, 3);
+        long fa = features.oneHot(a), fb = features.oneHot(b), fc = features.oneHot(c);
+        return features.sameOrDifferent(fa & fb & fc, fa & fb | (fa | fb) & fc);
+    }
+
+    @Override
+    public boolean testSet(int[] cards, int offset) {
+        return testSet(cards, offset, offset + config.featureSize);
+    }
+
+    /**
+     * Checks if cards[from .. to - 1] form a legal set, comparing all features at once on their one-hot lanes.
+     */
+    private boolean testSet(int[] cards, int from, int to) {
+        if (!features.hasOneHot()) return testSetByFeatures(cards, from, to);
+        if (to - from < 2) return false;
+
+        long common = features.oneHot(cards[from]), seen = common, collisions = 0;
+        for (int j = from + 1; j < to; ++j) {
+            long card = features.oneHot(cards[j]);
+            collisions |= seen & card;
+            seen |= card;
+            common &= card;
+        }
+        return features.sameOrDifferent(common, collisions);
+    }
+
+    /**
+     * Checks if cards[from .. to - 1] form a legal set, one feature at a time.
+     */
+    boolean testSetByFeatures(int[] cards, int from, int to) {
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            for (int j = from + 1; j < to; ++j)
+                if (features.feature(cards[from], i) != features.feature(cards[j], i)) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = from + 1; j < to; ++j)
+                for (int k = j; k < to; ++k)
+                    if (features.feature(cards[j - 1], i) == features.feature(cards[k], i)) {
                         butDifferent = false;
                         break;
                     }
@@ -66,6 +117,167 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        if (!canSearch()) return findSetsByCombinations(deck, count);
+
+        int[] cards = toArray(deck);
+        long[] present = presence(cards);
+        if (config.parallelSearch && cards.length >= PARALLEL_THRESHOLD)
+            return findSetsInParallel(cards, present, count);
+
+        LinkedList<int[]> sets = new LinkedList<>();
+        SetCursor cursor = new SetCursor(features, config.featureSize, cards, present, 0, cards.length);
+        while (cursor.advance()) {
+            sets.add(sorted(cursor.set()));
+            if (sets.size() >= count) break;
+        }
+        return sets;
+    }
+
+    @Override
+    public List<int[]> findSetsWith(int card, List<Integer> deck, int count) {
+        LinkedList<int[]> sets = new LinkedList<>();
+        if (!canSearch()) {
+            List<Integer> cards = new LinkedList<>(deck);
+            cards.add(card);
+            for (int[] set : findSetsByCombinations(cards, Integer.MAX_VALUE))
+                if (Arrays.binarySearch(set, card) >= 0) {
+                    sets.add(set);
+                    if (sets.size() >= count) break;
+                }
+            return sets;
+        }
+
+        int[] cards = toArray(deck);
+        SetCursor cursor = new SetCursor(features, config.featureSize, cards, presence(cards), card);
+        while (cursor.advance()) {
+            sets.add(sorted(cursor.set()));
+            if (sets.size() >= count) break;
+        }
+        return sets;
+    }
+
+    @Override
+    public void forEachSet(List<Integer> deck, SetConsumer action) {
+        if (!canSearch()) {
+            for (int[] set : findSetsByCombinations(deck, Integer.MAX_VALUE))
+                if (!action.accept(set)) return;
+            return;
+        }
+
+        int[] cards = toArray(deck);
+        SetCursor cursor = new SetCursor(features, config.featureSize, cards, presence(cards), 0, cards.length);
+        while (cursor.advance())
+            if (!action.accept(cursor.set())) return;
+    }
+
+    @Override
+    public Stream<int[]> streamSets(List<Integer> deck) {
+        if (!canSearch()) return findSetsByCombinations(deck, Integer.MAX_VALUE).stream();
+
+        int[] cards = toArray(deck);
+        SetCursor cursor = new SetCursor(features, config.featureSize, cards, presence(cards), 0, cards.length);
+        Spliterator<int[]> sets = new Spliterators.AbstractSpliterator<int[]>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super int[]> action) {
+                if (!cursor.advance()) return false;
+                action.accept(sorted(cursor.set()));
+                return true;
+            }
+        };
+        return StreamSupport.stream(sets, false);
+    }
+
+    /**
+     * Returns true iff the cursor search applies (i.e. featureSize == 3 or the one-hot lanes fit in a long).
+     */
+    private boolean canSearch() {
+        return config.featureSize == 3 || features.hasOneHot();
+    }
+
+    private static int[] toArray(List<Integer> deck) {
+        int[] cards = new int[deck.size()];
+        int n = 0;
+        for (int card : deck)
+            cards[n++] = card;
+        return cards;
+    }
+
+    private static int[] sorted(int[] set) {
+        int[] copy = set.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /**
+     * Returns a bitmap of the given cards (bit card % 64 of word card / 64), or null if it is not needed.
+     */
+    private long[] presence(int[] cards) {
+        if (config.featureSize != 3) return null;
+        long[] present = new long[(config.deckSize + 63) >>> 6];
+        for (int card : cards)
+            present[card >>> 6] |= 1L << card;
+        return present;
+    }
+
+    /**
+     * Finds up to count sets using the common fork/join pool: the positions of the first card of a set are split
+     * into ranges that idle workers steal. Once count sets were found every running task stops at its next set, and
+     * the tasks that did not start yet return at once.
+     */
+    private List<int[]> findSetsInParallel(int[] cards, long[] present, int count) {
+        Queue<int[]> sets = new ConcurrentLinkedQueue<>();
+        AtomicInteger found = new AtomicInteger();
+        ForkJoinPool.commonPool().invoke(new SearchTask(cards, present, 0, cards.length, found, count, sets));
+        return new LinkedList<>(sets);
+    }
+
+    /**
+     * A fork/join task that searches for the sets whose first card is at a position in [from, to).
+     */
+    private class SearchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] cards;
+        private final long[] present;
+        private final int from;
+        private final int to;
+        private final AtomicInteger found;
+        private final int count;
+        private final Queue<int[]> sets;
+
+        private SearchTask(int[] cards, long[] present, int from, int to, AtomicInteger found, int count,
+                           Queue<int[]> sets) {
+            this.cards = cards;
+            this.present = present;
+            this.from = from;
+            this.to = to;
+            this.found = found;
+            this.count = count;
+            this.sets = sets;
+        }
+
+        @Override
+        protected void compute() {
+            if (found.get() >= count) return; // the search is over before this range was reached
+            if (to - from > PARALLEL_GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SearchTask(cards, present, from, middle, found, count, sets),
+                        new SearchTask(cards, present, middle, to, found, count, sets));
+                return;
+            }
+
+            SetCursor cursor = new SetCursor(features, config.featureSize, cards, present, from, to);
+            while (found.get() < count && cursor.advance())
+                if (found.getAndIncrement() < count) sets.add(sorted(cursor.set()));
+        }
+    }
+
+    /**
+     * Finds sets by walking all r-combinations of the deck in lexicographic order and testing each one.
+     */
+    List<int[]> findSetsByCombinations(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
@@ -74,10 +286,14 @@ public class UtilImpl implements Util {
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
+        int[] cards = new int[r];
         while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
+            for (int i = 0; i < r; ++i)
+                cards[i] = deck.get(combination[i]);
+            if (testSet(cards, 0)) {
+                int[] set = cards.clone();
+                Arrays.sort(set);
+                sets.add(set);
                 if (sets.size() >= count) return sets;
             }
 
@@ -0,0 +1,97 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A player's claim that the cards under its tokens form a legal set: the cards, their slots, the table version they
+ * were read at and the time of the claim. Each player has a single record that is reused for all its claims.
+ * The player publishes a claim (a newer claim replaces one the dealer did not take yet), and the dealer takes a
+ * consistent copy of it, retrying if the player was writing meanwhile.
+ */
+public class ClaimRecord {
+
+    /**
+     * The id of the player that makes the claims.
+     */
+    final int player;
+
+    /**
+     * The latest claim of the player (written by the player only).
+     */
+    private final AtomicIntegerArray claimedCards;
+    private final AtomicIntegerArray claimedSlots;
+    private volatile long claimedVersion;
+    private volatile long claimedAt;
+
+    /**
+     * Odd while the player is writing a claim.
+     */
+    private volatile int stamp;
+
+    /**
+     * True iff the player id is in the dealer's queue and the claim was not taken yet.
+     */
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    /**
+     * The copy of the claim the dealer took (read and written by the dealer only).
+     */
+    final int[] cards;
+    final int[] slots;
+    long version;
+    long nanoTime;
+
+    /**
+     * @param player  - the id of the player.
+     * @param setSize - the number of cards in a set.
+     */
+    public ClaimRecord(int player, int setSize) {
+        this.player = player;
+        claimedCards = new AtomicIntegerArray(setSize);
+        claimedSlots = new AtomicIntegerArray(setSize);
+        cards = new int[setSize];
+        slots = new int[setSize];
+    }
+
+    /**
+     * Publishes a new claim (the player thread only).
+     *
+     * @param cards   - the cards under the player's tokens.
+     * @param slots   - the slots of the cards.
+     * @param version - the table version the cards were read at.
+     * @return - true iff the player id should be added to the dealer's queue (i.e. it is not there already).
+     */
+    public boolean publish(int[] cards, int[] slots, long version) {
+        stamp++;
+        for (int i = 0; i < this.cards.length; i++) {
+            claimedCards.set(i, cards[i]);
+            claimedSlots.set(i, slots[i]);
+        }
+        claimedVersion = version;
+        claimedAt = System.nanoTime();
+        stamp++;
+        return queued.compareAndSet(false, true);
+    }
+
+    /**
+     * Copies the latest claim into cards, slots, version and nanoTime (the dealer thread only).
+     * A claim published after this call starts is queued again.
+     */
+    public void take() {
+        queued.set(false);
+        while (true) {
+            int before = stamp;
+            if ((before & 1) == 0) {
+                for (int i = 0; i < cards.length; i++) {
+                    cards[i] = claimedCards.get(i);
+                    slots[i] = claimedSlots.get(i);
+                }
+                version = claimedVersion;
+                nanoTime = claimedAt;
+                if (stamp == before) return;
+            }
+            Thread.yield(); // the player is in the middle of writing
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The key presses of a computer player. It looks at the table snapshot, picks one of the legal sets on the table
+ * (or, at the configured error rate, random cards) and after a reaction time presses the keys of its slots, if the
+ * cards are still there. Reaction times are normally distributed with the configured mean and deviation.
+ */
+public class ComputerPlayer {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final Table table;
+
+    /**
+     * The player the keys are pressed for.
+     */
+    private final Player player;
+
+    /**
+     * The slots and cards the computer player is about to press (null if it did not pick any yet).
+     */
+    private int[] targetSlots;
+    private final int[] targetCards;
+
+    private volatile ScheduledExecutorService executor;
+
+    private volatile ScheduledFuture<?> next;
+
+    private volatile boolean stopped;
+
+    public ComputerPlayer(Env env, Table table, Player player) {
+        this.env = env;
+        this.table = table;
+        this.player = player;
+        this.targetCards = new int[env.config.featureSize];
+    }
+
+    /**
+     * Starts pressing keys on the given threads.
+     *
+     * @param executor - the threads shared by all the players.
+     */
+    public void start(ScheduledExecutorService executor) {
+        this.executor = executor;
+        scheduleNext();
+    }
+
+    /**
+     * Stops pressing keys.
+     */
+    public void stop() {
+        stopped = true;
+        ScheduledFuture<?> next = this.next;
+        if (next != null) next.cancel(false);
+    }
+
+    private void scheduleNext() {
+        if (stopped) return;
+        try {
+            next = executor.schedule(this::act, reactionMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // the game is over
+        }
+    }
+
+    /**
+     * Returns a random reaction time.
+     */
+    private long reactionMillis() {
+        double millis = env.config.computerReactionMillis
+                + ThreadLocalRandom.current().nextGaussian() * env.config.computerReactionDeviationMillis;
+        return Math.max(1, (long) millis);
+    }
+
+    /**
+     * Presses the keys of the target picked last time (if its cards are still on the table) or picks a new target,
+     * then schedules the next step.
+     */
+    void act() { //package private so we can use in the tests
+        if (stopped) return;
+        if (player.state() != Player.State.PLAYING) {
+            targetSlots = null; // the table will have changed by the time the player can play again
+        } else {
+            TableSnapshot snapshot = table.snapshot();
+            if (targetSlots != null && onTable(snapshot)) {
+                press(snapshot);
+                targetSlots = null;
+            } else {
+                targetSlots = pickTarget(snapshot);
+            }
+        }
+        scheduleNext();
+    }
+
+    /**
+     * Returns true iff all the target cards are still in the target slots.
+     */
+    private boolean onTable(TableSnapshot snapshot) {
+        for (int i = 0; i < targetSlots.length; i++)
+            if (snapshot.cardAt(targetSlots[i]) != targetCards[i]) return false;
+        return true;
+    }
+
+    /**
+     * Removes the player's tokens that are not on the target, and places tokens on the target slots (the player
+     * accepts the placements because the removals are pressed first).
+     */
+    private void press(TableSnapshot snapshot) {
+        for (int slot = 0; slot < snapshot.slots(); slot++)
+            if (snapshot.playerHasToken(player.id, slot) && !isTarget(slot)) player.keyPressed(slot);
+        for (int slot : targetSlots)
+            if (!snapshot.playerHasToken(player.id, slot)) player.keyPressed(slot);
+    }
+
+    private boolean isTarget(int slot) {
+        for (int target : targetSlots)
+            if (target == slot) return true;
+        return false;
+    }
+
+    /**
+     * Picks the slots to press: a legal set on the table, or random cards at the configured error rate.
+     *
+     * @return - the slots, or null if there is nothing to pick.
+     */
+    private int[] pickTarget(TableSnapshot snapshot) {
+        Random random = ThreadLocalRandom.current();
+        if (random.nextDouble() < env.config.computerErrorRate) return pickRandomCards(snapshot, random);
+        if (snapshot.countSets() == 0) return null;
+
+        int[] set = snapshot.set(random.nextInt(snapshot.countSets()));
+        int[] slots = new int[set.length];
+        for (int i = 0; i < set.length; i++) {
+            slots[i] = snapshot.slotOf(set[i]); // the sets of a snapshot are made of its own cards
+            targetCards[i] = set[i];
+        }
+        return slots;
+    }
+
+    /**
+     * Picks featureSize random slots with cards on them (mostly not a set).
+     */
+    private int[] pickRandomCards(TableSnapshot snapshot, Random random) {
+        int[] slots = new int[snapshot.slots()];
+        int count = 0;
+        for (int slot = 0; slot < slots.length; slot++)
+            if (snapshot.cardAt(slot) != TableSnapshot.NO_CARD) slots[count++] = slot;
+        int size = env.config.featureSize;
+        if (count < size) return null;
+
+        int[] picked = new int[size];
+        for (int i = 0; i < size; i++) { // a partial shuffle
+            int j = i + random.nextInt(count - i);
+            int slot = slots[j];
+            slots[j] = slots[i];
+            picked[i] = slot;
+            targetCards[i] = snapshot.cardAt(slot);
+        }
+        return picked;
+    }
+}
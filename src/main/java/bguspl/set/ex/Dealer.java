@@ -1,15 +1,19 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
-import bguspl.set.UtilImpl;
+import bguspl.set.ThreadLogger;
+import bguspl.set.TimerWheel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
 
 /**
  * This class manages the dealer's threads and data
@@ -28,9 +32,19 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
+     */
+    private final IntDeck deck;
+
+    /**
+     * The random number generator used to shuffle the deck.
+     */
+    Random random = new Random(); //package private so we can use in the tests
+
+    /**
+     * The sets that can still be completed from the cards in the deck and on the table.
      */
-    private final List<Integer> deck;
+    private final RemainingSets remainingSets;
 
     /**
      * True iff game should be terminated.
@@ -43,23 +57,71 @@ public class Dealer implements Runnable {
     private long reshuffleTime = Long.MAX_VALUE;
 
     /**
-     * Array of players threads.
+     * The time the countdown was last reset (the elapsed time display counts from it).
      */
-    private Thread[] playerThreads;
+    private long resetTime;
 
     /**
-     * The actions from the players the dealer should make.
+     * The table version the hints were last printed for.
      */
-    ConcurrentLinkedQueue<Integer> pendingRequestsFromPlayers; //package private so we can use in the tests
+    private long hintedVersion = -1;
+
+    /**
+     * The threads the players handle their key presses and verdicts on, shared by all the players and sized to the
+     * number of cores (created when the game starts).
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * The ids of the players whose claims the dealer should check (each player is in it at most once).
+     */
+    MpscIntQueue pendingRequestsFromPlayers; //package private so we can use in the tests
+
+    /**
+     * The latest claim of each player.
+     */
+    private final ClaimRecord[] claims;
+
+    /**
+     * The players whose requests are being checked.
+     */
+    private final int[] batch;
+
+    /**
+     * The slots and cards of the legal sets found in the current batch, and whether each slot was taken.
+     */
+    private final int[] takenSlots;
+    private final int[] takenCards;
+    private final boolean[] slotTaken;
+
+    /**
+     * The dealer sleeps on this condition until a player sends a request, the game is terminated or the next
+     * deadline (countdown display tick or reshuffle) is signalled by a timer event.
+     */
+    private final ReentrantLock wakeLock = new ReentrantLock();
+    private final Condition wakeup = wakeLock.newCondition();
+
+    /**
+     * True iff the dealer's deadline passed since it went to sleep (guarded by wakeLock).
+     */
+    private boolean alarmed;
 
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-
-        this.playerThreads = new Thread[env.config.players];
-        this.pendingRequestsFromPlayers = new ConcurrentLinkedQueue<Integer>();
+        deck = new IntDeck(env.config.deckSize);
+        remainingSets = new RemainingSets(env);
+
+        this.pendingRequestsFromPlayers = new MpscIntQueue(players.length);
+        this.claims = new ClaimRecord[players.length];
+        for (int i = 0; i < claims.length; i++)
+            claims[i] = new ClaimRecord(i, env.config.featureSize);
+
+        this.batch = new int[players.length];
+        this.takenSlots = new int[env.config.tableSize];
+        this.takenCards = new int[env.config.tableSize];
+        this.slotTaken = new boolean[env.config.tableSize];
     }
 
     /**
@@ -69,22 +131,32 @@ public class Dealer implements Runnable {
     public void run() {
         env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
 
-        // start the players threads
+        // start the players on the shared threads
+        executor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            private int created;
+
+            @Override
+            public Thread newThread(Runnable task) {
+                ThreadLogger thread = new ThreadLogger(task, "players-" + created++, env.logger);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
         for(int i=0; i<players.length; i++){
-            String playerName = "player " + i;
-            playerThreads[i] = new Thread(players[i], playerName);
-            playerThreads[i].start();
+            players[i].start(executor);
         }
 
-
         while (!shouldFinish()) {
             shuffle();
             placeCardsOnTable();
             updateTimerDisplay(true);
+            printHints();
             timerLoop();
             removeAllCardsFromTable();
         }
         announceWinners();
+        terminate();
+        executor.shutdownNow();
         env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
@@ -92,15 +164,24 @@ public class Dealer implements Runnable {
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() <= reshuffleTime) {
+        while (!terminate && !turnOver()) {
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             checkRequests();
-            freezePlayers();
             placeCardsOnTable();
+            printHints();
         }
     }
 
+    /**
+     * Returns true iff the deck should be reshuffled: the countdown timed out or, without a turn timeout, there is no
+     * set left on the table.
+     */
+    private boolean turnOver() {
+        if (env.config.turnTimeoutMillis > 0) return System.currentTimeMillis() >= reshuffleTime;
+        return table.countSets() == 0;
+    }
+
     /**
      * Called when the game should be terminated.
      */
@@ -109,6 +190,7 @@ public class Dealer implements Runnable {
             players[i].terminate();
         }
         terminate = true;
+        wakeUp();
     }
 
     /**
@@ -117,60 +199,187 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || ((env.util.findSets(deck, 1).size() == 0) && (!isThereSetOnTable()));
+        return terminate || remainingSets.remaining() == 0;
     }
 
     /**
-     * Checks cards should be removed from the table and removes them.
+     * Check if any cards can be removed from the deck and placed on the table.
      */
-    private void removeCardsFromTable(int[]setToRemove) {
-        for(int i=0; i<setToRemove.length; i++){
-            int slot = table.getSlotFromCard(setToRemove[i]);
-            table.slotAvailable[slot] = false;
-            removeCard(slot);
+    void placeCardsOnTable() { //package private so we can use in the tests
+        List<Integer> tableCards = new ArrayList<>();
+        List<Integer> emptySlots = new ArrayList<>();
+        readTable(new int[0], tableCards, emptySlots);
+        int[] cards = chooseCards(tableCards, emptySlots);
+        int[] slots = new int[cards.length];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = emptySlots.get(i);
+
+        if (cards.length > 0) {
+            // a single table transaction and a single ui update for all the new cards
+            table.placeCards(cards, slots);
+            env.ui.placeCards(cards, slots);
+        }
+        table.setTableAvailable(true);
+        if (cards.length > 0) {
+            updateTimerDisplay(true);
         }
     }
 
     /**
-     * Check if any cards can be removed from the deck and placed on the table.
+     * Reads the cards on the table, as if the given slots were already empty.
+     *
+     * @param freedSlots - the slots that are about to be emptied.
+     * @param tableCards - the list to put the cards that stay on the table in.
+     * @param emptySlots - the list to put the empty (or freed) slots in, in ascending order.
      */
-    private void placeCardsOnTable() {
-        boolean wasPlaced = false;
-        for (int i=0; i<env.config.tableSize; i++){
-            if(table.getCardFromSlot(i) == null && !deck.isEmpty()){
-                placeCard(i);
-
-                table.slotAvailable[i] = true;
+    private void readTable(int[] freedSlots, List<Integer> tableCards, List<Integer> emptySlots) {
+        for (int i = 0; i < env.config.tableSize; i++) {
+            Integer card = table.getCardFromSlot(i);
+            boolean freed = false;
+            for (int slot : freedSlots)
+                freed |= slot == i;
+            if (card == null || freed) emptySlots.add(i);
+            else tableCards.add(card);
+        }
+    }
 
-                wasPlaced = true;
+    /**
+     * Takes out of the deck the cards to place on the empty slots (the cards of a set first, if a set is guaranteed).
+     *
+     * @param tableCards - the cards that stay on the table.
+     * @param emptySlots - the empty slots of the table.
+     * @return the cards to place on the first empty slots, in order.
+     */
+    private int[] chooseCards(List<Integer> tableCards, List<Integer> emptySlots) {
+        int[] cards = new int[Math.min(emptySlots.size(), deck.size())];
+        int chosen = env.config.guaranteeSet ? chooseSetCards(tableCards, emptySlots, cards) : 0;
+        for (int placed = chosen; placed < cards.length; placed++)
+            cards[placed] = deck.draw();
+        if (chosen > 0) {
+            // mix the chosen cards in with the drawn ones, so the set does not always land in the first empty slots
+            for (int i = cards.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int card = cards[i];
+                cards[i] = cards[j];
+                cards[j] = card;
             }
         }
-        table.tableAvailable = true;
-        if(wasPlaced){
-            updateTimerDisplay(true);
+        return cards;
+    }
+
+    /**
+     * If there is no set on the table, takes out of the deck the cards that complete a set (if the cards left allow).
+     *
+     * @param tableCards - the cards that stay on the table.
+     * @param emptySlots - the empty slots of the table.
+     * @param cards      - the array to put the chosen cards in.
+     * @return the number of cards chosen.
+     */
+    private int chooseSetCards(List<Integer> tableCards, List<Integer> emptySlots, int[] cards) {
+        if (deck.isEmpty() || hasSet(tableCards)) return 0;
+
+        int[] set = remainingSets.findCompletable(tableCards, tableCards::contains, emptySlots.size(), random);
+        if (set == null) return 0;
+
+        int chosen = 0;
+        for (int card : set)
+            if (deck.remove(card))
+                cards[chosen++] = card;
+        return chosen;
+    }
+
+    /**
+     * Returns true iff one of the sets on the table is made of the given cards only.
+     */
+    private boolean hasSet(List<Integer> tableCards) {
+        for (int[] set : table.getSets()) {
+            boolean stays = true;
+            for (int card : set)
+                stays &= tableCards.contains(card);
+            if (stays) return true;
         }
+        return false;
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until the timer display changes (or the deck should be reshuffled), as signalled by a timer event, or
+     * until the thread is awakened by a request from a player. Without a timer display the dealer sleeps until a
+     * request arrives or the game is terminated.
      */
     private void sleepUntilWokenOrTimeout() {
+        TimerWheel.Timeout alarm = null;
+        wakeLock.lock();
         try {
-            synchronized (this) {wait(700);}
-        } catch (InterruptedException ignored){}
-        
+            alarmed = false;
+            long now = System.currentTimeMillis();
+            long untilNextSecond;
+            if (env.config.turnTimeoutMillis > 0) {
+                long left = reshuffleTime - now;
+                if (left <= 0) return;
+                untilNextSecond = left % 1000;
+            }
+            else if (env.config.turnTimeoutMillis == 0) {
+                untilNextSecond = 1000 - (now - resetTime) % 1000;
+            }
+            else {
+                untilNextSecond = -1; // nothing to display
+            }
+            if (untilNextSecond >= 0)
+                alarm = env.timers.schedule(this::alarm, untilNextSecond == 0 ? 1000 : untilNextSecond);
+            // the queue is checked under the lock, so a request added meanwhile is never missed
+            while (!terminate && pendingRequestsFromPlayers.isEmpty() && !alarmed)
+                wakeup.await();
+        } catch (InterruptedException ignored) {
+        } finally {
+            wakeLock.unlock();
+            if (alarm != null) alarm.cancel();
+        }
+    }
+
+    /**
+     * Wakes the dealer up at its deadline (a timer event).
+     */
+    private void alarm() {
+        wakeLock.lock();
+        try {
+            alarmed = true;
+            wakeup.signal();
+        } finally {
+            wakeLock.unlock();
+        }
+    }
+
+    /**
+     * Wakes the dealer up if it is sleeping.
+     */
+    private void wakeUp() {
+        wakeLock.lock();
+        try {
+            wakeup.signal();
+        } finally {
+            wakeLock.unlock();
+        }
     }
 
     /**
      * Reset and/or update the countdown and the countdown display.
      */
     private void updateTimerDisplay(boolean reset) {
+        long now = System.currentTimeMillis();
         if(reset){
-            reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+            resetTime = now;
+        }
+        if(env.config.turnTimeoutMillis <= 0){
+            // no reshuffle deadline: 0 shows the time since the last reset, a negative timeout shows nothing
+            reshuffleTime = Long.MAX_VALUE;
+            if(env.config.turnTimeoutMillis == 0) env.ui.setElapsed(now - resetTime);
+        }
+        else if(reset){
+            reshuffleTime = now + env.config.turnTimeoutMillis;
             env.ui.setCountdown(env.config.turnTimeoutMillis, false);
         }
         else{
-            env.ui.setCountdown(reshuffleTime-System.currentTimeMillis(), false);
+            env.ui.setCountdown(reshuffleTime-now, false);
         }
     }
 
@@ -178,17 +387,20 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        table.tableAvailable = false;
         for (int i=0; i<env.config.tableSize; i++)
         {
-            if(table.getCardFromSlot(i)!=null){
+            Integer card = table.getCardFromSlot(i);
+            if(card!=null){
+                assert !deck.contains(card) : "card " + card + " is both on the table and in the deck";
                 // return cards to the deck
-                deck.add(table.getCardFromSlot(i));
+                deck.add(card);
             }
-
-            removeCard(i);
-
         }
+
+        // a single table transaction and a single ui update for all the cards and tokens
+        int[] slots = table.clear();
+        env.ui.removeTokens();
+        env.ui.removeCards(slots);
     }
 
     /**
@@ -222,126 +434,128 @@ public class Dealer implements Runnable {
      * Shuffles the deck.
      */
     private void shuffle() {
-        Collections.shuffle(deck);
+        deck.shuffle(random);
     }
 
     /**
-     * adds the request to the queue of requests.
-     * @post - the int representing the player that sent the request is inserted to pendingRequestsFromPlayers.
+     * adds the request to the queue of requests (a newer claim of the same player replaces an unchecked one).
+     * @param playerId - the player that claims a set.
+     * @param cards    - the cards under the player's tokens.
+     * @param slots    - the slots of the cards.
+     * @param version  - the table version the cards were read at.
+     * @post - the int representing the player that sent the request is in pendingRequestsFromPlayers.
      */
-    public void addRequest(Integer playerId){
-        pendingRequestsFromPlayers.add(playerId);
-
-        synchronized (this) { notifyAll(); }
+    public void addRequest(int playerId, int[] cards, int[] slots, long version){
+        if(claims[playerId].publish(cards, slots, version) && !pendingRequestsFromPlayers.offer(playerId))
+            throw new IllegalStateException("the queue of requests holds more than one request of a player");
+        wakeUp();
     }
 
     /**
      * takes the requests from the queue and calls the appropriate functions.
+     * The requests are handled in batches: each player is checked once per batch, claims whose cards were already
+     * taken by an earlier claim are dropped, and the cards of all the legal sets are replaced in one table transaction.
      * @post - the pendingRequestsFromPlayers should be empty.
      */
     public void checkRequests(){
         while (!pendingRequestsFromPlayers.isEmpty()){
-            Integer playerToCheck;
-
-            playerToCheck = pendingRequestsFromPlayers.poll();
+            int batchSize = 0;
+            int winners = 0;
+            int taken = 0;
+            int playerToCheck;
+            while ((playerToCheck = pendingRequestsFromPlayers.poll()) != MpscIntQueue.EMPTY){
+                batch[batchSize++] = playerToCheck;
+            }
 
-            UtilImpl util = new UtilImpl(env.config);
-            if(!table.checkIfHasMaxTokens(playerToCheck)){
-                return;
+            for (int i = 0; i < batchSize; i++){
+                int player = batch[i];
+                ClaimRecord claim = claims[player];
+                claim.take();
+                if(isStale(claim)){
+                    players[player].claimDropped();
+                    continue;
+                }
+
+                if(env.logger.isLoggable(Level.FINE))
+                    env.logger.fine("checking claim of player " + (player + 1) + " made "
+                            + (System.nanoTime() - claim.nanoTime) / 1000 + "us ago");
+
+                if (env.util.testSet(claim.cards, 0)){
+                    for (int j = 0; j < claim.cards.length; j++){
+                        slotTaken[claim.slots[j]] = true;
+                        takenSlots[taken] = claim.slots[j];
+                        takenCards[taken++] = claim.cards[j];
+                    }
+                    batch[winners++] = player; // the winners are kept at the head of the batch
+                }
+                else {
+                    players[player].penalty();
+                }
             }
 
-           int[]setToCheck = table.getSetForPlayer(playerToCheck);
-           if (util.testSet(setToCheck)){
-                removeAllTokensFromSetSlots(setToCheck);
-                removeCardsFromTable(setToCheck);
-                placeCardsOnTable();
-                players[playerToCheck].point();
-                players[playerToCheck].setRefreezeTime(env.config.pointFreezeMillis);
-           }
-           else {
-                players[playerToCheck].penalty();
-                players[playerToCheck].setRefreezeTime(env.config.penaltyFreezeMillis);
-
-           }
+            if (winners > 0)
+                replaceSets(winners, taken);
         }
     }
 
     /**
-     * Removes all tokens from set slots.
+     * Returns true iff the claim no longer matches the table: a slot was taken by a legal set earlier in the batch,
+     * the player removed a token, or (only if the table changed since the claim) a card left its slot.
      */
-    private void removeAllTokensFromSetSlots(int[]setToRemove){
-        for(int i=0; i<setToRemove.length; i++){
-            if(table.getSlotFromCard(i) != null){
-                removeAllTokensFromSlot(table.getSlotFromCard(i));
+    private boolean isStale(ClaimRecord claim){
+        boolean changed = claim.version != table.version();
+        for (int j = 0; j < claim.slots.length; j++){
+            int slot = claim.slots[j];
+            if(slotTaken[slot] || !table.playerHasToken(claim.player, slot)) return true;
+            if(changed){
+                Integer card = table.getCardFromSlot(slot);
+                if(card == null || card != claim.cards[j]) return true;
             }
-            
         }
+        return false;
     }
 
     /**
-     * Removes all tokens from slot.
+     * Replaces the legal sets found in a batch with new cards from the deck (all in one table transaction) and rewards
+     * the players that found them.
+     * @param winners - the number of players at the head of batch that found a legal set.
+     * @param taken   - the number of cards at the head of takenSlots and takenCards.
      */
-    private void removeAllTokensFromSlot(int slot){
-        for(int i=0; i < players.length; i++){
-            players[i].removeToken(slot);
+    private void replaceSets(int winners, int taken){
+        int[] removedSlots = Arrays.copyOf(takenSlots, taken);
+        List<Integer> tableCards = new ArrayList<>();
+        List<Integer> emptySlots = new ArrayList<>();
+        readTable(removedSlots, tableCards, emptySlots);
+        for (int i = 0; i < taken; i++)
+            remainingSets.remove(takenCards[i]);
+        int[] cards = chooseCards(tableCards, emptySlots);
+        int[] slots = new int[cards.length];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = emptySlots.get(i);
+
+        int[] removed = table.replaceCards(removedSlots, cards, slots);
+        for (int slot : removedSlots){
+            slotTaken[slot] = false;
+            env.ui.removeTokens(slot);
         }
-    }
-
-    /**
-     * Removes card from the table and the tokens from it.
-     */
-    private void removeCard(int slot){
-        if(table.getCardFromSlot(slot) != null){
-            removeAllTokensFromSlot(slot);
-
-            // remove cards at screen
-            env.ui.removeCard(slot);
-
-            // remove from table
-            table.removeCard(slot);
-
+        env.ui.removeCards(removed);
+        if (cards.length > 0) {
+            env.ui.placeCards(cards, slots);
+            updateTimerDisplay(true);
         }
-    }
-
-    /**
-     * Places card on the table.
-     */
-    private void placeCard(int slot){ 
-
-        // display cards
-        env.ui.placeCard(deck.get(0),slot);
-
-        // save at table
-        table.placeCard(deck.get(0),slot);
-
-        // remove cards from deck
-        deck.remove(0);
-    }
-
-    /**
-     * Updates freeze timer for all players.
-     */
-    private void freezePlayers(){
-        for(int i=0; i < players.length; i++){
-            players[i].updateFreezeDisplay();
+        for (int i = 0; i < winners; i++){
+            players[batch[i]].point();
         }
     }
 
     /**
-     * Checks if there is a set on the table.
+     * Prints the hints to the console if they are enabled and the table changed since they were last printed.
      */
-    private boolean isThereSetOnTable(){
-        boolean toReturn = false;
-        LinkedList<Integer> list = new LinkedList<>();
-        for(int i=0; i < env.config.tableSize; i++){
-            if(table.getCardFromSlot(i)!=null){
-                list.add(table.getCardFromSlot(i));
-            }
-        }
-
-        if(env.util.findSets(list, 1).size() != 0){
-            toReturn = true;
-        }
-        return toReturn;
+    private void printHints() {
+        if (!env.config.hints) return;
+        long version = table.version();
+        if (version == hintedVersion) return;
+        hintedVersion = version;
+        table.hints();
     }
 }
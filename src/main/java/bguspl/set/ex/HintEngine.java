@@ -0,0 +1,140 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class serves the legal sets on the table as hints (slots and features) to the console, the ui or computer
+ * players. The hints are built once per table version, from a snapshot of the table, and cached until the table
+ * changes.
+ */
+public class HintEngine {
+
+    /**
+     * A single hint: the slots of a legal set on the table and the features of its cards. The cards are kept in the
+     * order of their slots, so slots()[i] holds cards()[i], whose features are feature(i, ...).
+     */
+    public static final class Hint {
+
+        /**
+         * The slots of the set, sorted.
+         */
+        private final int[] slots;
+
+        /**
+         * The cards of the set (in the order of slots).
+         */
+        private final int[] cards;
+
+        /**
+         * The features of each card of the set (in the order of cards).
+         */
+        private final int[][] features;
+
+        private Hint(int[] slots, int[] cards, int[][] features) {
+            this.slots = slots;
+            this.cards = cards;
+            this.features = features;
+        }
+
+        /**
+         * Returns a copy of the slots of the set, sorted.
+         */
+        public int[] slots() {
+            return slots.clone();
+        }
+
+        /**
+         * Returns a copy of the cards of the set, in the order of slots().
+         */
+        public int[] cards() {
+            return cards.clone();
+        }
+
+        /**
+         * Returns the value of a feature of a card in the set.
+         *
+         * @param card    - the index of the card in cards().
+         * @param feature - the feature index.
+         */
+        public int feature(int card, int feature) {
+            return features[card][feature];
+        }
+
+        @Override
+        public String toString() {
+            return "Hint: Set found: slots: " + Arrays.toString(slots) + " features: " + Arrays.deepToString(features);
+        }
+    }
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The table the hints are taken from.
+     */
+    private final Table table;
+
+    /**
+     * The hints of the table at the version of the last snapshot they were built from (replaced as a whole, so
+     * readers on other threads always see a matching pair).
+     */
+    private volatile Cache cache;
+
+    private static final class Cache {
+        private final long version;
+        private final List<Hint> hints;
+
+        private Cache(long version, List<Hint> hints) {
+            this.version = version;
+            this.hints = hints;
+        }
+    }
+
+    public HintEngine(Env env, Table table) {
+        this.env = env;
+        this.table = table;
+    }
+
+    /**
+     * Returns the hints of the current table. The list is built only if the table changed since the last call.
+     *
+     * @return - an unmodifiable list of the legal sets on the table.
+     */
+    public List<Hint> hints() {
+        TableSnapshot snapshot = table.snapshot();
+        Cache cached = cache;
+        if (cached != null && cached.version == snapshot.version()) return cached.hints;
+
+        List<Hint> hints = new ArrayList<>(snapshot.countSets());
+        for (int i = 0; i < snapshot.countSets(); i++) {
+            int[] set = snapshot.set(i);
+            int[] slots = new int[set.length];
+            for (int j = 0; j < set.length; j++)
+                slots[j] = snapshot.slotOf(set[j]);
+            Arrays.sort(slots);
+            // the cards follow their slots, so both arrays (and the features) line up
+            int[] cards = new int[slots.length];
+            for (int j = 0; j < slots.length; j++)
+                cards[j] = snapshot.cardAt(slots[j]);
+            hints.add(new Hint(slots, cards, env.util.cardsToFeatures(cards)));
+        }
+        hints = Collections.unmodifiableList(hints);
+        cache = new Cache(snapshot.version(), hints);
+        return hints;
+    }
+
+    /**
+     * Prints the hints of the current table to the console.
+     */
+    public void print() {
+        for (Hint hint : hints())
+            System.out.println(hint);
+    }
+}
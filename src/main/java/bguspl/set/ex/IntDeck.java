@@ -0,0 +1,119 @@
+package bguspl.set.ex;
+
+import java.util.Random;
+
+/**
+ * This class holds the dealer's deck: a primitive array of card ids with a cursor at its top.
+ * Drawing and returning a card are O(1), shuffling is done in place, and a card can be taken out by its id in O(1).
+ *
+ * @inv 0 <= size() <= capacity
+ * @inv cards[position[card]] == card for every card in the deck
+ */
+public class IntDeck {
+
+    /**
+     * The cards of the deck (the top of the deck is at cards[size - 1]).
+     */
+    private final int[] cards;
+
+    /**
+     * The position of each card in cards (-1 if the card is not in the deck).
+     */
+    private final int[] position;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private int size;
+
+    /**
+     * Creates a deck holding all the cards 0 .. capacity - 1.
+     *
+     * @param capacity - the total number of cards in the game.
+     */
+    public IntDeck(int capacity) {
+        cards = new int[capacity];
+        position = new int[capacity];
+        for (int card = 0; card < capacity; ++card) {
+            cards[card] = card;
+            position[card] = card;
+        }
+        size = capacity;
+    }
+
+    /**
+     * Returns the number of cards in the deck.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true iff there are no cards in the deck.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns true iff the card is in the deck.
+     */
+    public boolean contains(int card) {
+        return position[card] >= 0;
+    }
+
+    /**
+     * Takes the top card of the deck.
+     *
+     * @return - the card id.
+     * @pre - !isEmpty()
+     */
+    public int draw() {
+        int card = cards[--size];
+        position[card] = -1;
+        return card;
+    }
+
+    /**
+     * Returns a card to the top of the deck.
+     *
+     * @param card - the card id.
+     * @pre - !contains(card)
+     */
+    public void add(int card) {
+        cards[size] = card;
+        position[card] = size++;
+    }
+
+    /**
+     * Takes a specific card out of the deck (the top card takes its place).
+     *
+     * @param card - the card id.
+     * @return - true iff the card was in the deck.
+     */
+    public boolean remove(int card) {
+        int index = position[card];
+        if (index < 0) return false;
+        int top = cards[--size];
+        cards[index] = top;
+        position[top] = index;
+        position[card] = -1;
+        return true;
+    }
+
+    /**
+     * Shuffles the deck in place (Fisher-Yates).
+     *
+     * @param random - the random number generator to use.
+     */
+    public void shuffle(Random random) {
+        for (int i = size - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+            position[cards[i]] = i;
+            position[card] = j;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The pending key presses of a single player: a lock-free ring of slots for a single producer (the ui thread, or the
+ * computer player's key presses) and a single consumer (the player). Presses never block and never allocate.
+ * Repeated presses of the same slot cancel out before they are handled: a slot's pending bit is flipped by every
+ * press, only a press that sets the bit adds the slot to the ring, and the consumer skips slots whose bit was flipped
+ * back meanwhile.
+ */
+public class KeyPressQueue {
+
+    /**
+     * The value poll returns when there is nothing to handle.
+     */
+    public static final int EMPTY = -1;
+
+    private final int[] slots;
+
+    private final int mask;
+
+    /**
+     * The pending bit of each slot: bit (slot % 64) of word slot / 64.
+     */
+    private final AtomicLongArray pending;
+
+    /**
+     * The next position to add to (written by the producer only).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next position to take (written by the consumer only).
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The presses before this position are dropped (written by clear, from any thread).
+     */
+    private volatile long clearedUpTo;
+
+    /**
+     * @param tableSize - the number of slots on the table.
+     * @param capacity  - the minimal number of presses the ring can hold (rounded up to a power of 2).
+     */
+    public KeyPressQueue(int tableSize, int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new int[size];
+        mask = size - 1;
+        pending = new AtomicLongArray((tableSize + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * Adds a press of a slot (the producer only).
+     *
+     * @param slot - the slot pressed.
+     * @return - true iff the slot became pending (i.e. the consumer has something new to handle).
+     */
+    public boolean press(int slot) {
+        if (!flip(slot)) return false; // cancels the pending press of the same slot
+
+        long position = tail.get();
+        if (position - head.get() == slots.length) { // full: the press is dropped
+            flip(slot);
+            return false;
+        }
+        slots[(int) position & mask] = slot;
+        tail.lazySet(position + 1); // publishes the slot
+        return true;
+    }
+
+    /**
+     * Takes the next slot to toggle (the consumer only).
+     *
+     * @return - the slot, or EMPTY if no press is pending.
+     */
+    public int poll() {
+        long position = head.get();
+        long end = tail.get();
+        long cleared = clearedUpTo;
+        for (; position < end; position++) {
+            int slot = slots[(int) position & mask];
+            // clearing the bit takes the press; a bit that is not set was cancelled by a later press, and the presses
+            // before a clear are skipped without touching the bits (clear reset them, they belong to newer presses)
+            if (position >= cleared && unset(slot)) {
+                head.lazySet(position + 1);
+                return slot;
+            }
+        }
+        head.lazySet(position);
+        return EMPTY;
+    }
+
+    /**
+     * Drops all the presses added so far (any thread). They are skipped by the consumer's next poll.
+     */
+    public void clear() {
+        clearedUpTo = tail.get();
+        for (int word = 0; word < pending.length(); word++)
+            pending.set(word, 0);
+    }
+
+    /**
+     * Returns true iff a press of the slot is waiting to be handled.
+     */
+    public boolean isPending(int slot) {
+        return (pending.get(slot / Long.SIZE) & 1L << slot) != 0;
+    }
+
+    /**
+     * Returns true iff the ring is empty (a non empty ring might still hold cancelled presses only).
+     */
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * Returns the number of presses in the ring (including the cancelled ones not yet skipped).
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Flips the pending bit of a slot.
+     * @return - true iff the bit is set now.
+     */
+    private boolean flip(int slot) {
+        int word = slot / Long.SIZE;
+        long bit = 1L << slot;
+        long bits;
+        do {
+            bits = pending.get(word);
+        } while (!pending.compareAndSet(word, bits, bits ^ bit));
+        return (bits & bit) == 0;
+    }
+
+    /**
+     * Clears the pending bit of a slot.
+     * @return - true iff the bit was set.
+     */
+    private boolean unset(int slot) {
+        int word = slot / Long.SIZE;
+        long bit = 1L << slot;
+        long bits;
+        do {
+            bits = pending.get(word);
+            if ((bits & bit) == 0) return false;
+        } while (!pending.compareAndSet(word, bits, bits & ~bit));
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue of non-negative ints for many producers and a single consumer, backed by a ring of
+ * primitive slots (no boxing, no allocation per element). Each slot has a sequence number telling whose turn it is:
+ * a producer claims a position with a CAS on the tail and publishes its value by advancing the slot's sequence, the
+ * consumer only reads slots whose value was published.
+ */
+public class MpscIntQueue {
+
+    /**
+     * The value poll returns when the queue is empty.
+     */
+    public static final int EMPTY = -1;
+
+    private final int[] values;
+
+    /**
+     * The sequence of each slot: position if it is free for the producer of position, position + 1 if it holds the
+     * value of position.
+     */
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    /**
+     * The next position to produce to (shared by the producers).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next position to consume (the consumer's only).
+     */
+    private long head;
+
+    /**
+     * @param capacity - the minimal number of values the queue can hold (rounded up to a power of 2).
+     */
+    public MpscIntQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        values = new int[size];
+        sequences = new AtomicLongArray(size);
+        mask = size - 1;
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * Adds a value to the queue (any thread).
+     *
+     * @param value - a non-negative value.
+     * @return - false iff the queue is full.
+     */
+    public boolean offer(int value) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference < 0) return false; // the consumer did not free this slot yet
+            if (difference == 0 && tail.compareAndSet(position, position + 1)) break;
+        }
+        values[index] = value;
+        sequences.lazySet(index, position + 1); // publishes the value
+        return true;
+    }
+
+    /**
+     * Takes the oldest value out of the queue (the consumer thread only).
+     *
+     * @return - the value, or EMPTY if there is none.
+     */
+    public int poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) return EMPTY;
+        int value = values[index];
+        sequences.lazySet(index, head + values.length); // frees the slot for the next round
+        ++head;
+        return value;
+    }
+
+    /**
+     * Returns the number of values in the queue (an estimate while producers are adding).
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * Returns true iff the queue seems empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -1,16 +1,35 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * This class manages the players' threads and data
+ * This class manages the players' data. A player has no thread of its own: its key presses and verdicts are
+ * messages that are handled, one at a time, on threads shared by all the players.
  *
  * @inv id >= 0
  * @inv score >= 0
  */
 public class Player implements Runnable {
 
+    /**
+     * The states of a player. A player places and removes tokens only while PLAYING, key presses in other states are
+     * ignored. TERMINATED is final.
+     */
+    public enum State {
+        /** Can place and remove tokens. */
+        PLAYING,
+        /** Claimed a set and waits for the dealer. */
+        AWAITING_VERDICT,
+        /** Got a point or a penalty and waits for the freeze to end. */
+        FROZEN,
+        /** The game is over. */
+        TERMINATED
+    }
+
     /**
      * The game environment object.
      */
@@ -27,14 +46,19 @@ public class Player implements Runnable {
     public final int id;
 
     /**
-     * The thread representing the current player.
+     * The threads the player's messages are handled on (shared by all the players, set when the game starts).
+     */
+    private volatile ScheduledExecutorService executor;
+
+    /**
+     * True iff handling the player's messages is scheduled or running (so they are handled by one thread at a time).
      */
-    private Thread playerThread;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
 
     /**
-     * The thread of the AI (computer) player (an additional thread used to generate key presses).
+     * The key presses of the AI (computer) player.
      */
-    private Thread aiThread;
+    private ComputerPlayer ai;
 
     /**
      * True iff the player is human (not a computer player).
@@ -42,9 +66,9 @@ public class Player implements Runnable {
     private final boolean human;
 
     /**
-     * True iff game should be terminated.
+     * The current state of the player (changed by compare-and-set only, from any thread).
      */
-    private volatile boolean terminate;
+    private final AtomicReference<State> state = new AtomicReference<>(State.PLAYING);
 
     /**
      * The current score of the player.
@@ -52,15 +76,9 @@ public class Player implements Runnable {
     private int score;
 
     /**
-     * The current slots the player pressed.
-     */
-   
-    ArrayBlockingQueue<Integer> playersQueue; //package private so we can use in the tests
-
-    /**
-     * The number of current slots the player pressed.
+     * The slots the player pressed and that were not handled yet.
      */
-    private int numOfSlotsPressed;
+    final KeyPressQueue keyPresses; //package private so we can use in the tests
 
     /**
      * The Dealer.
@@ -68,19 +86,15 @@ public class Player implements Runnable {
     private Dealer dealer;
 
     /**
-     * is the player sleeping.
-     */
-    private boolean isSleeping;
-
-    /**
-     * -1 if should get a point, -2 if should get a penalty.
+     * The time when the player can return to play
      */
-    int pointOrPenalty; //package private so we can use in the tests
+    volatile long refreezeTime = Long.MAX_VALUE; //package private so we can use in the tests
 
     /**
-     * The time when the player can return to play
+     * The cards and slots of the player's next claim (reused).
      */
-    long refreezeTime = Long.MAX_VALUE; //package private so we can use in the tests
+    private final int[] claimCards;
+    private final int[] claimSlots;
 
     /**
      * The class constructor.
@@ -98,66 +112,92 @@ public class Player implements Runnable {
         this.human = human;
 
         this.dealer = dealer;
-        this.playersQueue = new ArrayBlockingQueue<>(env.config.featureSize);
-        this.numOfSlotsPressed = 0;
+        this.keyPresses = new KeyPressQueue(env.config.tableSize, 2 * env.config.tableSize);
 
-        this.pointOrPenalty = 0;
+        this.refreezeTime = 0;
 
-        this.isSleeping = false;
+        this.claimCards = new int[env.config.featureSize];
+        this.claimSlots = new int[env.config.featureSize];
+    }
 
-        this.refreezeTime = 0;
+    /**
+     * Starts handling the player's messages on the given threads (and generating key presses for a computer player).
+     *
+     * @param executor - the threads shared by all the players.
+     */
+    public void start(ScheduledExecutorService executor) {
+        env.logger.info("player " + (id + 1) + " starting.");
+        this.executor = executor;
+        if (!human) createArtificialIntelligence();
+        wakeUp(); // for the messages that came before the start
     }
 
     /**
-     * The main player thread of each player starts here (main loop for the player thread).
+     * Handles the pending messages of the player (runs on one of the shared threads).
      */
     @Override
     public void run() {
-        playerThread = Thread.currentThread();
-        env.logger.info("Thread " + Thread.currentThread().getName() + "starting.");
-        if (!human) createArtificialIntelligence();
+        while (hasWork())
+            doAnAction();
 
-        while (!terminate) {
-            try {
-                synchronized (this) {
-                wait(); }
-            } catch (InterruptedException ignored){}
+        scheduled.set(false);
+        // a message that came after the last check and before the flag was cleared did not schedule a run
+        if (hasWork()) wakeUp();
+    }
 
-            doAnAction();   
-        }
+    /**
+     * Returns true iff the player has a message to handle now.
+     */
+    private boolean hasWork() {
+        return state.get() == State.PLAYING && !keyPresses.isEmpty();
+    }
 
-        if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
-        env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
+    /**
+     * Schedules handling the player's messages, unless it is already scheduled.
+     */
+    private void wakeUp() {
+        ScheduledExecutorService executor = this.executor;
+        if (executor == null || !scheduled.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false); // the game is over
+        }
     }
 
     /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * Schedules key presses for an AI (computer) player on the shared threads.
      */
     private void createArtificialIntelligence() {
-        // note: this is a very very smart AI (!)
-        aiThread = new Thread(() -> {
-            env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
-            while (!terminate) {
-
-                int r = (int) ((Math.random() * (12)));
-                keyPressed(r);
-
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException ignored) {}
-
-            }
-            env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
-        aiThread.start();
+        ai = new ComputerPlayer(env, table, this);
+        ai.start(executor);
     }
 
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
-        terminate = true;
+        state.set(State.TERMINATED);
+        if (ai != null) ai.stop();
+    }
+
+    /**
+     * Returns the current state of the player.
+     */
+    public State state() {
+        return state.get();
+    }
+
+    /**
+     * Moves the player to the target state, unless the game is over.
+     * @return - true iff the state was changed.
+     */
+    private boolean moveTo(State target) {
+        while (true) {
+            State current = state.get();
+            if (current == State.TERMINATED) return false;
+            if (state.compareAndSet(current, target)) return true;
+        }
     }
 
     /**
@@ -165,61 +205,109 @@ public class Player implements Runnable {
      *
      * @param slot - the slot corresponding to the key pressed.
      * 
-     * @post - the int representing the pressed slot is inserted to the playersQueue.
+     * @post - the slot is pending in keyPresses, unless a pending press of the same slot was cancelled by it.
      */
     public void keyPressed(int slot) {
-        if(!isSleeping && (numOfSlotsPressed < env.config.featureSize || table.playerHasToken(this.id, slot))){
-            try {
-                playersQueue.put(slot);
+        // never blocks: the caller is the ui thread or a shared thread
+        if(state.get() == State.PLAYING && accepts(slot) && keyPresses.press(slot)){
+            wakeUp();
+        }
+    }
 
-                synchronized (this) { notifyAll();}
-                
-            } catch (InterruptedException ignored) {}
+    /**
+     * Returns true iff a press of the slot would not add a token beyond featureSize. The presses that were not handled
+     * yet count as done (each one toggles the token of its slot), so removals and placements pressed together are
+     * checked in the order they will be handled.
+     */
+    private boolean accepts(int slot){
+        if(hasTokenAfterPending(slot)) return true; // the press removes a token (or cancels a pending placement)
+        int tokens = 0;
+        for(int other = 0; other < env.config.tableSize; other++){
+            if(hasTokenAfterPending(other)) tokens++;
         }
+        return tokens < env.config.featureSize;
+    }
+
+    private boolean hasTokenAfterPending(int slot){
+        return table.playerHasToken(id, slot) != keyPresses.isPending(slot);
     }
 
     /**
-     * Doing the current action that should be made - freezing or putting/removing token.
+     * Doing the current action that should be made - putting/removing token, and claiming a set.
      */
     private void doAnAction(){
-        int currSlot;
-        try {
-            if(pointOrPenalty == -1){ //got legal set- sleep for PointFreezeSeconds
-                if(env.config.pointFreezeMillis != 0){
-                    isSleeping = true;
-                    Thread.sleep(env.config.pointFreezeMillis);
-                    isSleeping = false;
-                }
-                playersQueue.clear();
-                pointOrPenalty = 0;
-            }
-            else if(pointOrPenalty == -2){ //wrong set- sleep for PenaltyFreezeSeconds
-                if(env.config.penaltyFreezeMillis != 0){
-                    isSleeping = true;
-                    Thread.sleep(env.config.penaltyFreezeMillis);
-                    isSleeping = false;
-                }
-                playersQueue.clear();
-                pointOrPenalty = 0;
-            }
-            else{
-                currSlot = playersQueue.take();
-
-                if(!table.playerHasToken(this.id, currSlot)){
-                    if(numOfSlotsPressed < env.config.featureSize){
-                        placeToken(currSlot);
-                    }
-                }
-                else{
-                    removeToken(currSlot);
-                }
-
-                if(numOfSlotsPressed == env.config.featureSize){
-                    dealer.addRequest(id);
-               }
+        int currSlot = keyPresses.poll();
+        if(currSlot == KeyPressQueue.EMPTY) return; // the pending presses cancelled out
+
+        if(!table.playerHasToken(this.id, currSlot)){
+            if(table.countTokens(id) < env.config.featureSize){
+                placeToken(currSlot);
             }
+        }
+        else{
+            removeToken(currSlot);
+        }
 
-        } catch (InterruptedException ignored) {}
+        if(table.countTokens(id) == env.config.featureSize){
+            claim();
+        }
+    }
+
+    /**
+     * Sends the cards under the player's tokens to the dealer and waits for the verdict.
+     */
+    private void claim(){
+        if(!state.compareAndSet(State.PLAYING, State.AWAITING_VERDICT)) return;
+        long version = table.getClaimForPlayer(id, claimCards, claimSlots);
+        if(version < 0){ // the dealer removed one of the cards meanwhile
+            state.compareAndSet(State.AWAITING_VERDICT, State.PLAYING);
+            return;
+        }
+        dealer.addRequest(id, claimCards, claimSlots, version);
+    }
+
+    /**
+     * Called by the dealer when it drops the player's claim without a verdict (the cards left the table).
+     */
+    public void claimDropped(){
+        if(state.compareAndSet(State.AWAITING_VERDICT, State.PLAYING)){
+            wakeUp(); // for the key presses that came before the claim
+        }
+    }
+
+    /**
+     * Freezes the player for the given time after a verdict, without holding a thread meanwhile.
+     * The freeze display is updated by timer events, once a second and when the freeze ends.
+     */
+    private void freeze(long millis){
+        keyPresses.clear();
+        if(millis <= 0){
+            if(moveTo(State.PLAYING)) wakeUp();
+            return;
+        }
+        refreezeTime = System.currentTimeMillis() + millis;
+        if(moveTo(State.FROZEN)) freezeTick();
+    }
+
+    /**
+     * Updates the freeze display, and either schedules the next update or ends the freeze (a timer event).
+     */
+    private void freezeTick(){
+        if(state.get() != State.FROZEN) return;
+        long left = refreezeTime - System.currentTimeMillis();
+        if(left <= 0){
+            env.ui.setFreeze(id, 0);
+            unfreeze();
+            return;
+        }
+        env.ui.setFreeze(id, left);
+        long untilNextSecond = left % 1000;
+        env.timers.schedule(this::freezeTick, untilNextSecond == 0 ? 1000 : untilNextSecond);
+    }
+
+    private void unfreeze(){
+        keyPresses.clear();
+        if(state.compareAndSet(State.FROZEN, State.PLAYING)) wakeUp();
     }
 
     /**
@@ -231,21 +319,16 @@ public class Player implements Runnable {
     public void point() {
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.ui.setScore(id, ++score);
-        pointOrPenalty = -1;
-
-        synchronized (this) { notifyAll(); }
+        freeze(env.config.pointFreezeMillis);
     }
 
     /**
      * Penalize a player and perform other related actions.
      * 
-     * @post - the pointOrPenalty variable equals -2.
+     * @post - the player is FROZEN (if there is a penalty freeze).
      */
     public void penalty() {
-        pointOrPenalty = -2;
-
-        synchronized (this) { notifyAll(); }
-
+        freeze(env.config.penaltyFreezeMillis);
     }
 
     /**
@@ -259,10 +342,8 @@ public class Player implements Runnable {
      * Placing a token on the slot.
      */
     public void placeToken(int slot){
-        if(table.getCardFromSlot(slot) != null && table.tableAvailable && table.slotAvailable[slot]){
-            table.placeToken(id,slot);
+        if(table.placeToken(id,slot)){
             env.ui.placeToken(id,slot);
-            numOfSlotsPressed++;
         }
     }
 
@@ -270,10 +351,8 @@ public class Player implements Runnable {
      * Removing the token on the slot.
      */
     public void removeToken(int slot){
-        if(table.getCardFromSlot(slot) != null && table.playerHasToken(id, slot)){
-            table.removeToken(id,slot);
+        if(table.getCardFromSlot(slot) != null && table.removeToken(id,slot)){
             env.ui.removeToken(id,slot);
-            numOfSlotsPressed--;
         }
         
     }
@@ -286,18 +365,4 @@ public class Player implements Runnable {
             removeToken(i);
         }
     }
-
-    /**
-     * Updates the freezing display.
-     */
-    public void updateFreezeDisplay() {
-        env.ui.setFreeze(id, refreezeTime-System.currentTimeMillis());
-    }
-
-    /**
-     * Sets the refreezeTime to be the current time + the number of seconds the freeze should be.
-     */
-    public void setRefreezeTime(long time){
-        refreezeTime = System.currentTimeMillis() + time;
-    }
 }
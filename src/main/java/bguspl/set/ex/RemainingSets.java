@@ -0,0 +1,129 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * This class keeps track of the legal sets that can still be completed from the cards in play (in the deck or on the
+ * table). The sets of the full deck are found once, each card knows the sets it belongs to, and taking a card out of
+ * play only visits its own sets.
+ *
+ * @inv remaining() == the number of sets whose cards are all still in play
+ */
+public class RemainingSets {
+
+    /**
+     * The cards of each legal set of the full deck.
+     */
+    private final int[][] sets;
+
+    /**
+     * The ids of the sets each card belongs to.
+     */
+    private final int[][] setsOfCard;
+
+    /**
+     * True iff the set with this id can still be completed.
+     */
+    private final boolean[] setInPlay;
+
+    /**
+     * True iff the card is still in play.
+     */
+    private final boolean[] cardInPlay;
+
+    /**
+     * The number of sets that can still be completed.
+     */
+    private int remaining;
+
+    /**
+     * Finds all sets of the full deck and puts all the cards in play.
+     *
+     * @param env - the game environment object.
+     */
+    public RemainingSets(Env env) {
+        List<Integer> deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        sets = env.util.findSets(deck, Integer.MAX_VALUE).toArray(new int[0][]);
+
+        int[] setsPerCard = new int[env.config.deckSize];
+        for (int[] set : sets)
+            for (int card : set)
+                ++setsPerCard[card];
+        setsOfCard = new int[env.config.deckSize][];
+        for (int card = 0; card < setsOfCard.length; ++card)
+            setsOfCard[card] = new int[setsPerCard[card]];
+        for (int id = 0; id < sets.length; ++id)
+            for (int card : sets[id])
+                setsOfCard[card][--setsPerCard[card]] = id;
+
+        setInPlay = new boolean[sets.length];
+        cardInPlay = new boolean[env.config.deckSize];
+        Arrays.fill(setInPlay, true);
+        Arrays.fill(cardInPlay, true);
+        remaining = sets.length;
+    }
+
+    /**
+     * Takes a card out of play (e.g. when it is removed from the table as part of a legal set).
+     *
+     * @param card - the card id.
+     * @post - every set that contains the card is no longer counted.
+     */
+    public void remove(int card) {
+        if (!cardInPlay[card]) return;
+        cardInPlay[card] = false;
+        for (int id : setsOfCard[card])
+            if (setInPlay[id]) {
+                setInPlay[id] = false;
+                --remaining;
+            }
+    }
+
+    /**
+     * Finds a set that can still be completed by adding at most maxMissing cards to the table.
+     * The sets of the cards on the table are tried first, then all the sets starting at a random one.
+     *
+     * @param tableCards - the cards currently on the table.
+     * @param onTable    - returns true iff a card is on the table.
+     * @param maxMissing - the maximal number of cards of the set that may be missing from the table.
+     * @param random     - chooses where the scan over all sets starts.
+     * @return - the cards of such a set, or null if there is none.
+     */
+    public int[] findCompletable(List<Integer> tableCards, IntPredicate onTable, int maxMissing, Random random) {
+        if (remaining == 0) return null;
+        for (int card : tableCards)
+            for (int id : setsOfCard[card])
+                if (setInPlay[id] && missing(sets[id], onTable) <= maxMissing)
+                    return sets[id];
+
+        int start = random.nextInt(sets.length);
+        for (int i = 0; i < sets.length; ++i) {
+            int id = (start + i) % sets.length;
+            if (setInPlay[id] && missing(sets[id], onTable) <= maxMissing)
+                return sets[id];
+        }
+        return null;
+    }
+
+    private static int missing(int[] set, IntPredicate onTable) {
+        int missing = 0;
+        for (int card : set)
+            if (!onTable.test(card))
+                ++missing;
+        return missing;
+    }
+
+    /**
+     * Returns the number of sets that can still be completed from the cards in play.
+     */
+    public int remaining() {
+        return remaining;
+    }
+}
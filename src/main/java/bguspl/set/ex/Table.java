@@ -2,13 +2,17 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * This class contains the data that is visible to the player.
+ * The cards are changed only by the dealer, under a write lock. Players read them with optimistic reads.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
  */
@@ -30,21 +34,66 @@ public class Table {
     protected final Integer[] cardToSlot; // slot per card (if any)
 
     /**
-     * The tokens that were placed by each player
+     * The legal sets currently on the table, each one sorted by card id (updated on every card change).
      */
-    private boolean[][] tokensOfEachPlayer;
+    private final List<int[]> setsOnTable;
+
+    /**
+     * The tokens that were placed by each player: bit (slot % 64) of word (player * tokenWords + slot / 64).
+     */
+    private final AtomicLongArray tokensOfEachPlayer;
+
+    /**
+     * The number of words holding the tokens of a single player.
+     */
+    private final int tokenWords;
+
+    /**
+     * The players holding a token on each slot: bit (player % 64) of word (slot * playerWords + player / 64).
+     */
+    private final AtomicLongArray playersOnSlot;
+
+    /**
+     * The number of words holding the players of a single slot.
+     */
+    private final int playerWords;
 
     /**
      * Is the table available for actions.
      */
-    public boolean tableAvailable;
+    private boolean tableAvailable;
 
     /**
      * Is the slot available for actions.
      */
-    public boolean[]slotAvailable;
+    private final boolean[] slotAvailable;
 
-    
+    /**
+     * Guards the cards, the sets and the availability of the table. The dealer (the only writer) takes short write
+     * sections, readers validate optimistic reads and fall back to a read lock only if the dealer interfered.
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * The number of changes made to the cards and availability of the table (guarded by lock).
+     */
+    private long version;
+
+    /**
+     * The number of tokens placed and removed so far.
+     */
+    private final AtomicLong tokenChanges = new AtomicLong();
+
+    /**
+     * The latest snapshot of the table. The dealer publishes a new one on every change to the cards, readers only
+     * refresh its tokens when players moved them since (copy-on-write, nobody waits for anybody).
+     */
+    private final AtomicReference<TableSnapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * Serves the sets on the table as hints.
+     */
+    private final HintEngine hintEngine;
 
     /**
      * Constructor for testing.
@@ -59,8 +108,16 @@ public class Table {
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
 
+        this.setsOnTable = new ArrayList<>();
+        this.tokenWords = (env.config.tableSize + Long.SIZE - 1) / Long.SIZE;
+        this.tokensOfEachPlayer = new AtomicLongArray(env.config.players * tokenWords);
+        this.playerWords = (env.config.players + Long.SIZE - 1) / Long.SIZE;
+        this.playersOnSlot = new AtomicLongArray(env.config.tableSize * playerWords);
+
         this.tableAvailable = false;
         this.slotAvailable = new boolean[env.config.tableSize];
+        this.snapshot.set(takeSnapshot());
+        this.hintEngine = new HintEngine(env, this);
     }
 
     /**
@@ -71,21 +128,20 @@ public class Table {
     public Table(Env env) {
 
         this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
-
-        this.tokensOfEachPlayer = new boolean[env.config.players][env.config.tableSize];
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-        });
+        hintEngine.print();
+    }
+
+    /**
+     * Returns the legal sets of cards that are currently on the table, as hints (cached per table version).
+     */
+    public List<HintEngine.Hint> getHints() {
+        return hintEngine.hints();
     }
 
     /**
@@ -94,11 +150,16 @@ public class Table {
      * @return - the number of cards on the table.
      */
     public int countCards() {
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
-        return cards;
+        long stamp = lock.readLock();
+        try {
+            int cards = 0;
+            for (Integer card : slotToCard)
+                if (card != null)
+                    ++cards;
+            return cards;
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -109,37 +170,300 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
+        List<int[]> newSets = findNewSets(new int[0], new int[]{card});
+
+        long stamp = lock.writeLock();
+        try {
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            setsOnTable.addAll(newSets);
+            changed();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Places several cards on the table in a single transaction, and makes their slots available for actions.
+     * @param cards - the card ids to place.
+     * @param slots - the slots in which the cards should be placed, slots[i] is the slot of cards[i].
+     * @return      - the slots that were changed.
+     *
+     * @post - the cards placed are on the table, in the assigned slots.
+     */
+    public int[] placeCards(int[] cards, int[] slots) {
+        List<int[]> newSets = findNewSets(new int[0], cards);
+
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < cards.length; i++) {
+                cardToSlot[cards[i]] = slots[i];
+                slotToCard[slots[i]] = cards[i];
+                slotAvailable[slots[i]] = true;
+            }
+            setsOnTable.addAll(newSets);
+            changed();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return slots.clone();
+    }
+
+    /**
+     * Removes all the cards and tokens from the table in a single transaction. The table and all the slots become
+     * unavailable for actions.
+     * @return - the slots that had a card on them.
+     *
+     * @post - the table is empty.
+     */
+    public int[] clear() {
+        long stamp = lock.writeLock();
+        try {
+            tableAvailable = false;
+            Arrays.fill(slotAvailable, false);
+            // tokens are placed under the read lock, so none can be added meanwhile
+            for (int word = 0; word < tokensOfEachPlayer.length(); word++)
+                tokensOfEachPlayer.set(word, 0);
+            for (int word = 0; word < playersOnSlot.length(); word++)
+                playersOnSlot.set(word, 0);
+            tokenChanges.incrementAndGet();
+
+            int[] slots = new int[slotToCard.length];
+            int cleared = 0;
+            for (int slot = 0; slot < slotToCard.length; slot++) {
+                Integer card = slotToCard[slot];
+                if (card == null) continue;
+                cardToSlot[card] = null;
+                slotToCard[slot] = null;
+                slots[cleared++] = slot;
+            }
+            setsOnTable.clear();
+            changed();
+            return Arrays.copyOf(slots, cleared);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the cards and all the tokens from several grid slots and places new cards, in a single transaction.
+     * The emptied slots become unavailable for actions and the slots of the new cards become available, so readers
+     * never see the table between the removal and the refill.
+     * @param removedSlots - the slots from which to remove the cards.
+     * @param cards        - the card ids to place.
+     * @param slots        - the slots in which the cards should be placed, slots[i] is the slot of cards[i].
+     * @return             - the slots that had a card on them before the removal.
+     *
+     * @post - the removed cards are off the table and the new cards are on it, in the assigned slots.
+     */
+    public int[] replaceCards(int[] removedSlots, int[] cards, int[] slots) {
+        List<int[]> newSets = findNewSets(removedSlots, cards);
+
+        long stamp = lock.writeLock();
+        try {
+            int[] removed = new int[removedSlots.length];
+            int count = 0;
+            for (int slot : removedSlots) {
+                slotAvailable[slot] = false;
+                removeTokens(slot); // players place tokens under the read lock, so none come back meanwhile
+                Integer card = slotToCard[slot];
+                if (card == null) continue;
+                cardToSlot[card] = null;
+                slotToCard[slot] = null;
+                setsOnTable.removeIf(set -> Arrays.binarySearch(set, card) >= 0);
+                removed[count++] = slot;
+            }
+            for (int i = 0; i < cards.length; i++) {
+                cardToSlot[cards[i]] = slots[i];
+                slotToCard[slots[i]] = cards[i];
+                slotAvailable[slots[i]] = true;
+            }
+            setsOnTable.addAll(newSets);
+            changed();
+            return Arrays.copyOf(removed, count);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Finds the sets that placing the cards adds to the table (only sets that contain a new card can appear).
+     * Only the dealer changes the cards, so the search runs before taking the write lock.
+     * @param removedSlots - the slots whose cards leave the table in the same transaction.
+     * @param cards        - the cards to place.
+     * @return             - the new sets, each one found once (with the last of its cards in the order of placing).
+     */
+    private List<int[]> findNewSets(int[] removedSlots, int[] cards) {
+        List<Integer> others = new ArrayList<>();
+        for (int slot = 0; slot < slotToCard.length; slot++)
+            if (slotToCard[slot] != null && !contains(removedSlots, slot) && !contains(cards, slotToCard[slot]))
+                others.add(slotToCard[slot]);
+        List<int[]> newSets = new ArrayList<>();
+        for (int card : cards) {
+            newSets.addAll(env.util.findSetsWith(card, others, Integer.MAX_VALUE));
+            others.add(card);
+        }
+        return newSets;
+    }
+
+    /**
+     * Returns true iff the value is in the array.
+     */
+    private static boolean contains(int[] values, int value) {
+        for (int other : values)
+            if (other == value) return true;
+        return false;
+    }
+
+    /**
+     * Returns the number of legal sets currently on the table.
+     */
+    public int countSets() {
+        long stamp = lock.readLock();
         try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
+            return setsOnTable.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+    /**
+     * Returns a copy of the legal sets currently on the table (each one sorted by card id).
+     */
+    public List<int[]> getSets() {
+        long stamp = lock.readLock();
+        try {
+            return new ArrayList<>(setsOnTable);
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
-     * Removes a card from a grid slot on the table.
-     * @param slot - the slot from which to remove the card.
-     * 
-     * @post - the card is removed from the table, from the assigned slot.
+     * Returns the number of changes made so far to the cards and availability of the table.
+     * Two equal versions mean nothing changed in between.
      */
-    public void removeCard(int slot) {
+    public long version() {
+        long stamp = lock.tryOptimisticRead();
+        long current = version;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = version;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns an immutable view of the current table (cards, availability, tokens and sets). Calls that are not
+     * separated by a change to the table return the same instance.
+     */
+    public TableSnapshot snapshot() {
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            TableSnapshot current = snapshot.get();
+            long changes = tokenChanges.get();
+            if (current.tokenChanges() == changes) return current;
+
+            // only the tokens moved since the dealer published it
+            long[] tokens = copyTokens();
+            if (!lock.validate(stamp)) {
+                // a write section may have changed the cards and the tokens together: copy again under the read lock
+                stamp = lock.readLock();
+                try {
+                    current = snapshot.get();
+                    changes = tokenChanges.get();
+                    tokens = copyTokens();
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            TableSnapshot fresh = current.withTokens(changes, tokens);
+            if (snapshot.compareAndSet(current, fresh)) return fresh;
+            // a newer snapshot was published meanwhile
+        }
+    }
+
+    /**
+     * Bumps the version and publishes a snapshot of the new state (called by the dealer at the end of every write
+     * section).
+     */
+    private void changed() {
+        ++version;
+        snapshot.set(takeSnapshot());
+    }
+
+    private TableSnapshot takeSnapshot() {
+        long changes = tokenChanges.get();
+        int[] cards = new int[slotToCard.length];
+        boolean[] available = new boolean[slotToCard.length];
+        for (int slot = 0; slot < cards.length; slot++) {
+            cards[slot] = slotToCard[slot] == null ? TableSnapshot.NO_CARD : slotToCard[slot];
+            available[slot] = tableAvailable && slotAvailable[slot] && slotToCard[slot] != null;
+        }
+        return new TableSnapshot(version, changes, cards, available, copyTokens(), tokenWords,
+                setsOnTable.toArray(new int[0][]));
+    }
+
+    private long[] copyTokens() {
+        long[] tokens = new long[tokensOfEachPlayer.length()];
+        for (int word = 0; word < tokens.length; word++)
+            tokens[word] = tokensOfEachPlayer.get(word);
+        return tokens;
+    }
+
+    /**
+     * Sets whether the whole table is available for actions.
+     */
+    public void setTableAvailable(boolean available) {
+        long stamp = lock.writeLock();
         try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
+            if (tableAvailable == available) return;
+            tableAvailable = available;
+            changed();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-        int card = slotToCard[slot];
-        cardToSlot[card] = null;
-        slotToCard[slot] = null;
+    /**
+     * Returns true iff a token can be placed on the slot (there is a card on it and it is available for actions).
+     */
+    public boolean isSlotAvailable(int slot) {
+        long stamp = lock.tryOptimisticRead();
+        boolean available = tableAvailable && slotAvailable[slot] && slotToCard[slot] != null;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                available = tableAvailable && slotAvailable[slot] && slotToCard[slot] != null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return available;
     }
 
     /**
-     * Places a player token on a grid slot.
+     * Places a player token on a grid slot, if the slot is available for actions.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return       - true iff a token was placed.
      */
-    public void placeToken(int player, int slot) {
-        tokensOfEachPlayer[player][slot] = true;
+    public boolean placeToken(int player, int slot) {
+        // the read lock is shared by all players, it only keeps the dealer from clearing the slot meanwhile
+        long stamp = lock.readLock();
+        try {
+            if (!tableAvailable || !slotAvailable[slot] || slotToCard[slot] == null) return false;
+            if (!setBit(tokensOfEachPlayer, player * tokenWords + slot / Long.SIZE, slot)) return false;
+            setBit(playersOnSlot, slot * playerWords + player / Long.SIZE, player);
+            tokenChanges.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -149,65 +473,136 @@ public class Table {
      * @return       - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot) {
-        if(tokensOfEachPlayer[player][slot]){
-            tokensOfEachPlayer[player][slot] = false;
-            return true;
+        if (!clearBit(tokensOfEachPlayer, player * tokenWords + slot / Long.SIZE, slot)) return false;
+        clearBit(playersOnSlot, slot * playerWords + player / Long.SIZE, player);
+        tokenChanges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes the tokens of all players from a grid slot, visiting only the players that hold a token there.
+     * Called under the write lock only: placeToken sets the player's bit before the slot's bit, so a token placed
+     * concurrently could be missed here and left behind.
+     * @param slot - the slot from which to remove the tokens.
+     * @return     - true iff at least one token was removed.
+     */
+    private boolean removeTokens(int slot) {
+        boolean removed = false;
+        for (int word = 0; word < playerWords; word++) {
+            long players = playersOnSlot.getAndSet(slot * playerWords + word, 0);
+            for (; players != 0; players &= players - 1) { // iterate over the set bits
+                int player = word * Long.SIZE + Long.numberOfTrailingZeros(players);
+                removed |= clearBit(tokensOfEachPlayer, player * tokenWords + slot / Long.SIZE, slot);
+            }
         }
-        return false;
+        if (removed) tokenChanges.incrementAndGet();
+        return removed;
     }
 
     /**
-     * Returns if the player has a token on this slot or not.
+     * Atomically sets bit (index % 64) of a word.
+     * @return - true iff the bit was not set before.
      */
-    public boolean playerHasToken(int player, int slot){
-        return tokensOfEachPlayer[player][slot];
+    private static boolean setBit(AtomicLongArray words, int word, int index) {
+        long bit = 1L << index;
+        long bits;
+        do {
+            bits = words.get(word);
+            if ((bits & bit) != 0) return false;
+        } while (!words.compareAndSet(word, bits, bits | bit));
+        return true;
     }
 
     /**
-     * Returns the card that is on this slot.
+     * Atomically clears bit (index % 64) of a word.
+     * @return - true iff the bit was set before.
      */
-    public Integer getCardFromSlot(int slot){
-        return slotToCard[slot];
+    private static boolean clearBit(AtomicLongArray words, int word, int index) {
+        long bit = 1L << index;
+        long bits;
+        do {
+            bits = words.get(word);
+            if ((bits & bit) == 0) return false;
+        } while (!words.compareAndSet(word, bits, bits & ~bit));
+        return true;
     }
 
     /**
-     * Returns the slot the card is on.
+     * Returns if the player has a token on this slot or not.
      */
-    public Integer getSlotFromCard(int card){
-        return cardToSlot[card];
+    public boolean playerHasToken(int player, int slot){
+        return (tokensOfEachPlayer.get(player * tokenWords + slot / Long.SIZE) & 1L << slot) != 0;
     }
 
     /**
-     * Makes an array of cards that were picked by the player.
+     * Returns the number of tokens the player has on the table.
      */
-    public int[] getSetForPlayer(Integer playerId){
-        int currentIndex = 0;
-        int[] cards = new int[env.config.featureSize];
-        for (int i = 0; i < tokensOfEachPlayer[playerId].length; i++){
-            if(tokensOfEachPlayer[playerId][i] && slotToCard[i]!=null){
-                cards[currentIndex] = slotToCard[i];
-                currentIndex++;
-                if(currentIndex > env.config.featureSize-1)
-                    return cards;
+    public int countTokens(int player){
+        int count = 0;
+        for (int word = player * tokenWords; word < (player + 1) * tokenWords; word++)
+            count += Long.bitCount(tokensOfEachPlayer.get(word));
+        return count;
+    }
+
+    /**
+     * Returns the card that is on this slot.
+     */
+    public Integer getCardFromSlot(int slot){
+        long stamp = lock.tryOptimisticRead();
+        Integer card = slotToCard[slot];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                card = slotToCard[slot];
+            } finally {
+                lock.unlockRead(stamp);
             }
         }
-        return cards;
+        return card;
     }
 
     /**
-     * Checks if the player has max amount of tokens.
+     * Returns the slot the card is on.
      */
-    public boolean checkIfHasMaxTokens(Integer playerId){
-        int counter=0;
-        for(int i=0; i<tokensOfEachPlayer[playerId].length; i++){
-            if(tokensOfEachPlayer[playerId][i]){
-                counter++;
+    public Integer getSlotFromCard(int card){
+        long stamp = lock.tryOptimisticRead();
+        Integer slot = cardToSlot[card];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = cardToSlot[card];
+            } finally {
+                lock.unlockRead(stamp);
             }
         }
+        return slot;
+    }
 
-        if(counter == env.config.featureSize){
-            return true;
+    /**
+     * Fills in the cards under the player's tokens and their slots, all read at a single table version.
+     * @param playerId - the player.
+     * @param cards    - an array of featureSize cards to fill.
+     * @param slots    - an array of featureSize slots to fill.
+     * @return         - the table version, or -1 if the player does not have featureSize tokens on cards.
+     */
+    public long getClaimForPlayer(int playerId, int[] cards, int[] slots){
+        long stamp = lock.readLock();
+        try {
+            int count = 0;
+            for (int word = 0; word < tokenWords && count < cards.length; word++){
+                long tokens = tokensOfEachPlayer.get(playerId * tokenWords + word);
+                for (; tokens != 0 && count < cards.length; tokens &= tokens - 1){
+                    int slot = word * Long.SIZE + Long.numberOfTrailingZeros(tokens);
+                    Integer card = slotToCard[slot];
+                    if(card != null){
+                        cards[count] = card;
+                        slots[count++] = slot;
+                    }
+                }
+            }
+            return count == cards.length ? version : -1;
+        } finally {
+            lock.unlockRead(stamp);
         }
-        return false;
     }
 }
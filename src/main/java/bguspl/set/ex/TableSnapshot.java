@@ -0,0 +1,154 @@
+package bguspl.set.ex;
+
+/**
+ * An immutable view of the table at a single version: the card on each slot, the availability of the slots, the
+ * tokens of each player and the legal sets on the table. Readers (hints, computer players etc.) can look at it as long
+ * as they like without seeing half-applied changes and without holding the dealer back.
+ *
+ * @inv cardAt(x) == y iff cards[x] == y, for y >= 0
+ */
+public final class TableSnapshot {
+
+    /**
+     * The value of cardAt for an empty slot.
+     */
+    public static final int NO_CARD = -1;
+
+    /**
+     * The version of the table this snapshot was taken at.
+     */
+    private final long version;
+
+    /**
+     * The number of token changes made to the table before this snapshot was taken.
+     */
+    private final long tokenChanges;
+
+    /**
+     * The card on each slot (NO_CARD if none).
+     */
+    private final int[] cards;
+
+    /**
+     * Is the slot available for actions (including the availability of the whole table).
+     */
+    private final boolean[] available;
+
+    /**
+     * The tokens of each player: bit (slot % 64) of word (player * tokenWords + slot / 64).
+     */
+    private final long[] tokens;
+
+    /**
+     * The number of words holding the tokens of a single player.
+     */
+    private final int tokenWords;
+
+    /**
+     * The legal sets on the table, each one sorted by card id.
+     */
+    private final int[][] sets;
+
+    TableSnapshot(long version, long tokenChanges, int[] cards, boolean[] available, long[] tokens, int tokenWords,
+                  int[][] sets) {
+        this.version = version;
+        this.tokenChanges = tokenChanges;
+        this.cards = cards;
+        this.available = available;
+        this.tokens = tokens;
+        this.tokenWords = tokenWords;
+        this.sets = sets;
+    }
+
+    /**
+     * Returns a snapshot of the same cards with newer tokens.
+     */
+    TableSnapshot withTokens(long tokenChanges, long[] tokens) {
+        return new TableSnapshot(version, tokenChanges, cards, available, tokens, tokenWords, sets);
+    }
+
+    /**
+     * Returns the version of the table this snapshot was taken at.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the number of token changes made to the table before this snapshot was taken.
+     */
+    long tokenChanges() {
+        return tokenChanges;
+    }
+
+    /**
+     * Returns the number of slots on the table.
+     */
+    public int slots() {
+        return cards.length;
+    }
+
+    /**
+     * Returns the card on the slot, or NO_CARD if the slot is empty.
+     */
+    public int cardAt(int slot) {
+        return cards[slot];
+    }
+
+    /**
+     * Returns the slot of a card, or NO_CARD if the card is not on the table.
+     */
+    public int slotOf(int card) {
+        for (int slot = 0; slot < cards.length; slot++)
+            if (cards[slot] == card)
+                return slot;
+        return NO_CARD;
+    }
+
+    /**
+     * Returns a copy of the card on each slot (NO_CARD for an empty slot).
+     */
+    public int[] cards() {
+        return cards.clone();
+    }
+
+    /**
+     * Returns true iff a token could be placed on the slot when the snapshot was taken.
+     */
+    public boolean isSlotAvailable(int slot) {
+        return available[slot];
+    }
+
+    /**
+     * Returns true iff the player had a token on the slot.
+     */
+    public boolean playerHasToken(int player, int slot) {
+        return (tokens[player * tokenWords + slot / Long.SIZE] & 1L << slot) != 0;
+    }
+
+    /**
+     * Returns the number of tokens the player had on the table.
+     */
+    public int countTokens(int player) {
+        int count = 0;
+        for (int word = player * tokenWords; word < (player + 1) * tokenWords; word++)
+            count += Long.bitCount(tokens[word]);
+        return count;
+    }
+
+    /**
+     * Returns the number of legal sets on the table.
+     */
+    public int countSets() {
+        return sets.length;
+    }
+
+    /**
+     * Returns a copy of a legal set on the table (sorted by card id).
+     *
+     * @param index - the index of the set (between 0 and countSets() - 1).
+     */
+    public int[] set(int index) {
+        return sets[index].clone();
+    }
+}
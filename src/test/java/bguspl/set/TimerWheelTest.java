@@ -0,0 +1,70 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    TimerWheel timers;
+
+    @BeforeEach
+    void setUp() {
+        // a small wheel, so the timeouts below take several rounds
+        timers = new TimerWheel(Logger.getLogger("TimerWheelTest"), 1, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timers.stop();
+    }
+
+    @Test
+    void schedule_RunsInDeadlineOrder() throws InterruptedException {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        timers.schedule(() -> { order.add(30); done.countDown(); }, 30);
+        timers.schedule(() -> { order.add(5); done.countDown(); }, 5);
+        timers.schedule(() -> { order.add(15); done.countDown(); }, 15);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(5, order.get(0));
+        assertEquals(15, order.get(1));
+        assertEquals(30, order.get(2));
+    }
+
+    @Test
+    void cancel_KeepsTheTaskFromRunning() throws InterruptedException {
+        List<Integer> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        // far enough ahead that a busy test machine cannot run the task before it is cancelled
+        timers.schedule(() -> ran.add(1), 100).cancel();
+        timers.schedule(done::countDown, 150);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(ran.isEmpty());
+    }
+
+    @Test
+    void schedule_AfterIdle() throws InterruptedException {
+        CountDownLatch first = new CountDownLatch(1);
+        timers.schedule(first::countDown, 1);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        Thread.sleep(20); // the wheel parks while it is empty
+        CountDownLatch second = new CountDownLatch(1);
+        timers.schedule(second::countDown, 10);
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,71 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class UserInterfaceAnimatorTest {
+
+    UserInterfaceAnimator animator;
+    @Mock
+    private UserInterface ui;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0.2");
+        Logger logger = Logger.getAnonymousLogger();
+        animator = new UserInterfaceAnimator(logger, new Config(logger, properties), ui);
+    }
+
+    @AfterEach
+    void tearDown() {
+        animator.dispose();
+    }
+
+    @Test
+    void placeCard_ReturnsBeforeTheDelay() {
+        long start = System.currentTimeMillis();
+        animator.placeCard(5, 0);
+        animator.placeCard(6, 1);
+        assertTrue(System.currentTimeMillis() - start < 200);
+        verify(ui, never()).placeCard(6, 1);
+
+        verify(ui, timeout(1000)).placeCard(6, 1);
+    }
+
+    @Test
+    void gridChanges_AreReplayedInOrder() {
+        animator.placeCard(5, 0);
+        animator.placeToken(1, 0);
+        animator.removeTokens(0);
+        animator.removeCard(0);
+
+        InOrder order = inOrder(ui);
+        order.verify(ui, timeout(1000)).placeCard(5, 0);
+        order.verify(ui, timeout(1000)).placeToken(1, 0);
+        order.verify(ui, timeout(1000)).removeTokens(0);
+        order.verify(ui, timeout(1000)).removeCard(0);
+    }
+
+    @Test
+    void setScore_IsPassedThroughImmediately() {
+        animator.placeCard(5, 0);
+        animator.setScore(0, 3);
+        verify(ui).setScore(0, 3);
+    }
+}
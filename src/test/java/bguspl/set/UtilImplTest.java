@@ -0,0 +1,175 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    private static final int ROUNDS = 300;
+
+    private UtilImpl createUtil(int featureSize, int featureCount) {
+        return createUtil(featureSize, featureCount, false);
+    }
+
+    private UtilImpl createUtil(int featureSize, int featureCount, boolean parallelSearch) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("ParallelSearch", Boolean.toString(parallelSearch));
+        return new UtilImpl(new Config(Logger.getAnonymousLogger(), properties));
+    }
+
+    private static Set<String> asStrings(List<int[]> sets) {
+        Set<String> strings = new TreeSet<>();
+        for (int[] set : sets)
+            strings.add(Arrays.toString(set));
+        return strings;
+    }
+
+    /**
+     * Checks on random decks of 0 to 24 cards that findSets returns exactly the sets found by the combinatorial walk.
+     */
+    private void findSetsMatchesCombinations(int featureSize, int featureCount) {
+        UtilImpl util = createUtil(featureSize, featureCount);
+        Random random = new Random(featureSize * 31L + featureCount);
+        List<Integer> all = new ArrayList<>();
+        for (int card = 0; card < Math.pow(featureSize, featureCount); ++card)
+            all.add(card);
+
+        for (int round = 0; round < ROUNDS; ++round) {
+            Collections.shuffle(all, random);
+            List<Integer> deck = all.subList(0, Math.min(all.size(), random.nextInt(25)));
+
+            List<int[]> expected = util.findSetsByCombinations(deck, Integer.MAX_VALUE);
+            List<int[]> actual = util.findSets(deck, Integer.MAX_VALUE);
+            assertEquals(expected.size(), actual.size());
+            assertEquals(asStrings(expected), asStrings(actual));
+
+            int count = 1 + random.nextInt(3);
+            List<int[]> limited = util.findSets(deck, count);
+            assertEquals(Math.min(count, expected.size()), limited.size());
+            assertTrue(asStrings(expected).containsAll(asStrings(limited)));
+        }
+    }
+
+    @Test
+    void findSets_FeatureSize3() {
+        findSetsMatchesCombinations(3, 4);
+    }
+
+    @Test
+    void findSets_FeatureSize4() {
+        findSetsMatchesCombinations(4, 4);
+    }
+
+    @Test
+    void findSets_FeatureSize5() {
+        findSetsMatchesCombinations(5, 3);
+    }
+
+    @Test
+    void findSets_ParallelMatchesSequential() {
+        for (int featureSize = 3; featureSize <= 4; ++featureSize) {
+            // both decks are above the parallel threshold: 729 cards of 6 features, and 256 cards of 4 features
+            int featureCount = featureSize == 3 ? 6 : 4;
+            List<Integer> deck = new ArrayList<>();
+            for (int card = 0; card < Math.pow(featureSize, featureCount); ++card)
+                deck.add(card);
+
+            List<int[]> expected = createUtil(featureSize, featureCount).findSets(deck, Integer.MAX_VALUE);
+            UtilImpl parallel = createUtil(featureSize, featureCount, true);
+            assertEquals(asStrings(expected), asStrings(parallel.findSets(deck, Integer.MAX_VALUE)));
+            assertEquals(1, parallel.findSets(deck, 1).size());
+            assertEquals(100, parallel.findSets(deck, 100).size());
+        }
+    }
+
+    @Test
+    void streamSetsAndForEachSet_MatchFindSets() {
+        for (int featureSize = 3; featureSize <= 5; ++featureSize) {
+            UtilImpl util = createUtil(featureSize, 3);
+            Random random = new Random(featureSize);
+            List<Integer> all = new ArrayList<>();
+            for (int card = 0; card < Math.pow(featureSize, 3); ++card)
+                all.add(card);
+
+            for (int round = 0; round < ROUNDS; ++round) {
+                Collections.shuffle(all, random);
+                List<Integer> deck = all.subList(0, random.nextInt(20));
+                Set<String> expected = asStrings(util.findSets(deck, Integer.MAX_VALUE));
+
+                List<int[]> streamed = new ArrayList<>();
+                util.streamSets(deck).forEach(streamed::add);
+                assertEquals(expected.size(), streamed.size());
+                assertEquals(expected, asStrings(streamed));
+                assertEquals(Math.min(2, expected.size()), util.streamSets(deck).limit(2).count());
+
+                List<int[]> visited = new ArrayList<>();
+                util.forEachSet(deck, set -> visited.add(sorted(set)));
+                assertEquals(expected, asStrings(visited));
+
+                List<int[]> first = new ArrayList<>();
+                util.forEachSet(deck, set -> !first.add(set));
+                assertEquals(Math.min(1, expected.size()), first.size());
+            }
+        }
+    }
+
+    private static int[] sorted(int[] set) {
+        int[] copy = set.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    void findSetsWith_MatchesCombinations() {
+        for (int featureSize = 3; featureSize <= 5; ++featureSize) {
+            UtilImpl util = createUtil(featureSize, 3);
+            Random random = new Random(featureSize);
+            List<Integer> all = new ArrayList<>();
+            for (int card = 0; card < Math.pow(featureSize, 3); ++card)
+                all.add(card);
+
+            for (int round = 0; round < ROUNDS; ++round) {
+                Collections.shuffle(all, random);
+                int card = all.get(0);
+                List<Integer> deck = all.subList(1, 1 + random.nextInt(20));
+
+                Set<String> expected = new TreeSet<>();
+                List<Integer> withCard = new ArrayList<>(all.subList(0, deck.size() + 1));
+                for (int[] set : util.findSetsByCombinations(withCard, Integer.MAX_VALUE))
+                    if (Arrays.binarySearch(set, card) >= 0)
+                        expected.add(Arrays.toString(set));
+                assertEquals(expected, asStrings(util.findSetsWith(card, deck, Integer.MAX_VALUE)));
+            }
+        }
+    }
+
+    @Test
+    void testSet_MatchesFeatureLoop() {
+        for (int featureSize = 3; featureSize <= 5; ++featureSize) {
+            UtilImpl util = createUtil(featureSize, 4);
+            Random random = new Random(featureSize);
+            int[] cards = new int[featureSize];
+            for (int round = 0; round < ROUNDS * 10; ++round) {
+                for (int i = 0; i < cards.length; ++i)
+                    cards[i] = random.nextInt((int) Math.pow(featureSize, 4));
+                assertEquals(util.testSetByFeatures(cards, 0, cards.length), util.testSet(cards, 0));
+                if (featureSize == 3)
+                    assertEquals(util.testSet(cards), util.testSet(cards[0], cards[1], cards[2]));
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ComputerPlayerTest {
+
+    ComputerPlayer ai;
+    @Mock
+    Util util;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Table table;
+    @Mock
+    private Player player;
+    @Mock
+    private ScheduledExecutorService executor;
+    @Mock
+    private Dealer dealer;
+    @Mock
+    private Logger logger;
+
+    Env env;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("ComputerErrorRate", "0");
+        env = new Env(logger, new Config(logger, properties), ui, util);
+        ai = new ComputerPlayer(env, table, player);
+        ai.start(executor); // the scheduled steps never run, the tests call act
+    }
+
+    /**
+     * A snapshot with card (10 + slot) on each slot, a single set on slots 3, 5 and 7, and the given tokens of player 0.
+     */
+    private TableSnapshot snapshot(long version, long tokens) {
+        int[] cards = new int[12];
+        boolean[] available = new boolean[12];
+        for (int slot = 0; slot < cards.length; slot++) {
+            cards[slot] = 10 + slot;
+            available[slot] = true;
+        }
+        return new TableSnapshot(version, 0, cards, available, new long[]{tokens}, 1, new int[][]{{13, 15, 17}});
+    }
+
+    @Test
+    void act_PressesASetAfterReacting() {
+        when(player.state()).thenReturn(Player.State.PLAYING);
+        // a token left on slot 0, and one already on slot 5
+        when(table.snapshot()).thenReturn(snapshot(1, 1L | 1L << 5));
+
+        ai.act(); // picks the set
+        verify(player, never()).keyPressed(anyInt());
+
+        ai.act(); // presses it
+        verify(player).keyPressed(0);
+        verify(player).keyPressed(3);
+        verify(player).keyPressed(7);
+        verify(player, never()).keyPressed(5);
+    }
+
+    @Test
+    void act_DropsTheTargetWhenTheCardsChanged() {
+        when(player.state()).thenReturn(Player.State.PLAYING);
+        int[] cards = snapshot(2, 0).cards();
+        cards[5] = 30; // the set was taken meanwhile
+        TableSnapshot changed = new TableSnapshot(2, 0, cards, new boolean[12], new long[1], 1, new int[0][]);
+        when(table.snapshot()).thenReturn(snapshot(1, 0), changed);
+
+        ai.act();
+        ai.act();
+        verify(player, never()).keyPressed(anyInt());
+    }
+
+    @Test
+    void act_PlayerAcceptsTheSetWhileHoldingAllItsTokens() {
+        Env realEnv = new Env(logger, env.config, ui, new UtilImpl(env.config));
+        Table realTable = new Table(realEnv);
+        // the only set is {0, 1, 2} on slots 3, 5 and 7
+        realTable.placeCards(new int[]{3, 4, 9, 0, 1, 2}, new int[]{0, 1, 2, 3, 5, 7});
+        realTable.setTableAvailable(true);
+        // e.g. after a penalty: the player still holds featureSize tokens
+        for (int slot = 0; slot < 3; slot++)
+            realTable.placeToken(0, slot);
+
+        // the player is not started, so the presses stay in its queue
+        Player realPlayer = new Player(realEnv, dealer, realTable, 0, false);
+        ComputerPlayer realAi = new ComputerPlayer(realEnv, realTable, realPlayer);
+        realAi.start(executor);
+        realAi.act();
+        realAi.act();
+
+        // the placements are accepted behind the removals
+        for (int slot : new int[]{0, 1, 2, 3, 5, 7})
+            assertEquals(slot, realPlayer.keyPresses.poll());
+        assertEquals(KeyPressQueue.EMPTY, realPlayer.keyPresses.poll());
+    }
+}
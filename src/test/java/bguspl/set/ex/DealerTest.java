@@ -4,6 +4,7 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,14 +14,21 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 //import java.util.LinkedList;
 //import java.util.List;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-// import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-// import static org.mockito.ArgumentMatchers.eq;
-// import static org.mockito.Mockito.verify;
-// import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class DealerTest {
@@ -63,7 +71,7 @@ class DealerTest {
         int expectedElementPendingRequestsFromPlayers = 1;
 
         // call the method we are testing
-        dealer.addRequest(1);
+        dealer.addRequest(1, new int[]{0, 1, 2}, new int[]{0, 1, 2}, 0);
 
         // check that the element was added correctly
         assertEquals(expectedPendingRequestsFromPlayersSize, dealer.pendingRequestsFromPlayers.size());
@@ -81,6 +89,54 @@ class DealerTest {
         assertEquals(expectedPendingRequestsFromPlayersSize, dealer.pendingRequestsFromPlayers.size());
     }
 
+    @Test
+    void checkRequests_ChecksEachPlayerOncePerBatch(){
+        int[] cards = {0, 1, 2};
+        int[] slots = {3, 4, 5};
+        dealer.addRequest(1, cards, slots, 0);
+        dealer.addRequest(0, cards, slots, 0);
+        dealer.addRequest(1, cards, slots, 0);
+        assertEquals(2, dealer.pendingRequestsFromPlayers.size());
+
+        // both players lost their tokens meanwhile, so their claims are dropped
+        dealer.checkRequests();
 
+        assertEquals(0, dealer.pendingRequestsFromPlayers.size());
+        verify(table, times(1)).playerHasToken(1, 3);
+        verify(table, times(1)).playerHasToken(0, 3);
+        verify(util, never()).testSet(any(int[].class), anyInt());
+    }
 
-}
\ No newline at end of file
+    @Test
+    void placeCardsOnTable_GuaranteeSetPutsTheSetInRandomSlots(){
+        Properties properties = new Properties();
+        properties.put("GuaranteeSet", "True");
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, ui, new UtilImpl(config));
+
+        Set<String> setSlots = new HashSet<>();
+        for (int seed = 0; seed < 10; seed++){
+            Table realTable = new Table(env);
+            Dealer guaranteeing = new Dealer(env, realTable, new Player[0]);
+            guaranteeing.random = new Random(seed);
+
+            // call the method we are testing
+            guaranteeing.placeCardsOnTable();
+
+            // check that the table is full and has a set on it
+            assertEquals(config.tableSize, realTable.countCards());
+            TableSnapshot snapshot = realTable.snapshot();
+            assertTrue(snapshot.countSets() > 0);
+
+            int[] set = snapshot.set(0);
+            int[] slots = new int[set.length];
+            for (int i = 0; i < set.length; i++)
+                slots[i] = realTable.getSlotFromCard(set[i]);
+            Arrays.sort(slots);
+            setSlots.add(Arrays.toString(slots));
+        }
+
+        // check that the set does not always land in the same slots
+        assertTrue(setSlots.size() > 1);
+    }
+}
@@ -0,0 +1,67 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntDeckTest {
+
+    IntDeck deck;
+
+    @BeforeEach
+    void setUp() {
+        deck = new IntDeck(81);
+    }
+
+    /**
+     * Draws the whole deck and checks that each card contained in it was drawn exactly once.
+     */
+    private void assertHoldsEachCardOnce() {
+        boolean[] contained = new boolean[81];
+        for (int card = 0; card < contained.length; ++card)
+            contained[card] = deck.contains(card);
+
+        boolean[] seen = new boolean[81];
+        while (!deck.isEmpty()) {
+            int card = deck.draw();
+            assertFalse(seen[card]);
+            assertTrue(contained[card]);
+            seen[card] = true;
+        }
+        for (int card = 0; card < seen.length; ++card)
+            assertEquals(contained[card], seen[card]);
+    }
+
+    @Test
+    void drawAndAdd() {
+        int card = deck.draw();
+        assertEquals(80, deck.size());
+        assertFalse(deck.contains(card));
+
+        deck.add(card);
+        assertEquals(81, deck.size());
+        assertEquals(card, deck.draw());
+    }
+
+    @Test
+    void remove() {
+        assertTrue(deck.remove(5));
+        assertFalse(deck.remove(5));
+        assertEquals(80, deck.size());
+        assertHoldsEachCardOnce();
+    }
+
+    @Test
+    void shuffle() {
+        deck.remove(7);
+        deck.draw();
+        deck.shuffle(new Random(1));
+        assertEquals(79, deck.size());
+        assertHoldsEachCardOnce();
+    }
+}
@@ -0,0 +1,59 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPressQueueTest {
+
+    @Test
+    void press_RepeatedPressesCancelOut() {
+        KeyPressQueue queue = new KeyPressQueue(12, 8);
+        assertTrue(queue.press(3));
+        assertTrue(queue.press(5));
+        assertFalse(queue.press(3)); // cancels the first press of 3
+        assertTrue(queue.press(7));
+
+        assertEquals(5, queue.poll());
+        assertEquals(7, queue.poll());
+        assertEquals(KeyPressQueue.EMPTY, queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void press_AfterPollIsPendingAgain() {
+        KeyPressQueue queue = new KeyPressQueue(12, 8);
+        assertTrue(queue.press(3));
+        assertEquals(3, queue.poll());
+        assertTrue(queue.press(3));
+        assertEquals(3, queue.poll());
+        assertEquals(KeyPressQueue.EMPTY, queue.poll());
+    }
+
+    @Test
+    void press_DroppedWhenFull() {
+        KeyPressQueue queue = new KeyPressQueue(12, 2);
+        assertTrue(queue.press(0));
+        assertTrue(queue.press(1));
+        assertFalse(queue.press(2));
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.press(2)); // the dropped press left nothing pending
+        assertEquals(1, queue.poll());
+        assertEquals(2, queue.poll());
+    }
+
+    @Test
+    void clear_DropsThePendingPresses() {
+        KeyPressQueue queue = new KeyPressQueue(12, 8);
+        queue.press(1);
+        queue.press(2);
+        queue.clear();
+        assertTrue(queue.press(1)); // a press after the clear is not cancelled by the dropped one
+
+        assertEquals(1, queue.poll());
+        assertEquals(KeyPressQueue.EMPTY, queue.poll());
+    }
+}
@@ -0,0 +1,61 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscIntQueueTest {
+
+    @Test
+    void offerAndPoll_InOrderUntilFull() {
+        MpscIntQueue queue = new MpscIntQueue(3);
+        assertEquals(MpscIntQueue.EMPTY, queue.poll());
+
+        for (int i = 0; i < 4; i++)
+            assertTrue(queue.offer(i));
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(4));
+        for (int i = 1; i <= 4; i++)
+            assertEquals(i, queue.poll());
+        assertTrue(queue.isEmpty());
+        assertEquals(MpscIntQueue.EMPTY, queue.poll());
+    }
+
+    @Test
+    void offer_ManyProducersLoseNothing() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 10000;
+        MpscIntQueue queue = new MpscIntQueue(16);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++)
+                    while (!queue.offer(producer * perProducer + i))
+                        Thread.yield();
+            });
+            threads[p].start();
+        }
+
+        int[] next = new int[producers];
+        for (int received = 0; received < producers * perProducer; ) {
+            int value = queue.poll();
+            if (value == MpscIntQueue.EMPTY) {
+                Thread.yield();
+                continue;
+            }
+            // the values of each producer come out in the order they were added
+            int producer = value / perProducer;
+            assertEquals(next[producer]++, value % perProducer);
+            ++received;
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertTrue(queue.isEmpty());
+    }
+}
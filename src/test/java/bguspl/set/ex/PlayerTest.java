@@ -74,25 +74,25 @@ class PlayerTest {
 
     @Test
     void keyPressed(){ //our test
-        int expectedPlayersQueueSize = player.playersQueue.size()+1;
+        int expectedPlayersQueueSize = player.keyPresses.size()+1;
         int expectedElementInPlayersQueue = 3;
 
         // call the method we are testing
         player.keyPressed(3);
 
         // check that the element was added correctly
-        assertEquals(expectedPlayersQueueSize, player.playersQueue.size());
-        assertEquals(expectedElementInPlayersQueue, player.playersQueue.poll());
+        assertEquals(expectedPlayersQueueSize, player.keyPresses.size());
+        assertEquals(expectedElementInPlayersQueue, player.keyPresses.poll());
     }
 
     @Test
     void penalty() { //our test
-        int expectedPointOrPenalty = -2;
+        Player.State expectedState = Player.State.FROZEN;
 
         // call the method we are testing
         player.penalty();
 
-        // check that PointOrPenalty was changed correctly
-        assertEquals(expectedPointOrPenalty, player.pointOrPenalty);
+        // check that the player was frozen
+        assertEquals(expectedState, player.state());
     }
 }
\ No newline at end of file
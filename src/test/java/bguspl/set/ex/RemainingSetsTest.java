@@ -0,0 +1,62 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RemainingSetsTest {
+
+    RemainingSets remainingSets;
+
+    @BeforeEach
+    void setUp() {
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, new Properties());
+        Env env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        remainingSets = new RemainingSets(env);
+    }
+
+    @Test
+    void remaining_FullDeck() {
+        // 81 * 80 / 6 sets: every pair of cards has exactly one completing card
+        assertEquals(1080, remainingSets.remaining());
+    }
+
+    @Test
+    void remove_OnlyCountsSetsOfTheCard() {
+        // every card belongs to 80 / 2 sets
+        remainingSets.remove(0);
+        assertEquals(1040, remainingSets.remaining());
+
+        // cards 0 and 1 share the set {0, 1, 2}
+        remainingSets.remove(1);
+        assertEquals(1001, remainingSets.remaining());
+
+        remainingSets.remove(1);
+        assertEquals(1001, remainingSets.remaining());
+    }
+
+    @Test
+    void findCompletable_PrefersCardsOnTheTable() {
+        List<Integer> tableCards = Arrays.asList(0, 1);
+        int[] set = remainingSets.findCompletable(tableCards, tableCards::contains, 1, new Random(0));
+        assertArrayEquals(new int[]{0, 1, 2}, set);
+
+        // with card 2 out of play a set needs at least two cards that are not on the table
+        remainingSets.remove(2);
+        assertNull(remainingSets.findCompletable(tableCards, tableCards::contains, 1, new Random(0)));
+        assertEquals(2, Arrays.stream(remainingSets.findCompletable(tableCards, tableCards::contains, 2,
+                new Random(0))).filter(card -> !tableCards.contains(card)).count());
+    }
+}
@@ -4,14 +4,22 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
@@ -39,6 +47,17 @@ class TableTest {
         table = new Table(env, slotToCard, cardToSlot);
     }
 
+    /**
+     * Creates an empty table whose set searches are real (the default deck of 81 cards).
+     */
+    private static Table createTableWithRealUtil() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        return new Table(new Env(logger, config, new MockUserInterface(), new UtilImpl(config)));
+    }
+
     private int fillSomeSlots() {
         slotToCard[1] = 3;
         slotToCard[2] = 5;
@@ -55,6 +74,14 @@ class TableTest {
         }
     }
 
+    private void fillAllSlotsAndMakeAvailable() {
+        int[] cards = new int[slotToCard.length];
+        for (int i = 0; i < cards.length; ++i)
+            cards[i] = i;
+        table.placeCards(cards, cards);
+        table.setTableAvailable(true);
+    }
+
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
@@ -63,8 +90,7 @@ class TableTest {
     }
 
     private void removeCardsAndAssert() throws InterruptedException {
-        table.removeCard(1);
-        table.removeCard(2);
+        table.replaceCards(new int[]{1, 2}, new int[0], new int[0]);
 
         assertEquals(null, slotToCard[1]);
         assertEquals(null, slotToCard[2]);
@@ -115,6 +141,201 @@ class TableTest {
     }
 
 
+    @Test
+    void placeAndRemoveToken() {
+        fillAllSlotsAndMakeAvailable();
+        table.placeToken(1, 0);
+        table.placeToken(1, 3);
+        table.placeToken(1, 3);
+        assertTrue(table.playerHasToken(1, 3));
+        assertFalse(table.playerHasToken(0, 3));
+        assertEquals(2, table.countTokens(1));
+
+        assertTrue(table.removeToken(1, 3));
+        assertFalse(table.removeToken(1, 3));
+        assertEquals(1, table.countTokens(1));
+    }
+
+    @Test
+    void placeToken_OnlyOnAvailableSlots() {
+        table.placeCards(new int[]{1}, new int[]{1});
+        assertFalse(table.placeToken(0, 1));
+
+        table.setTableAvailable(true);
+        assertTrue(table.placeToken(0, 1));
+        assertFalse(table.placeToken(0, 2));
+
+        long version = table.version();
+        table.placeCards(new int[]{2}, new int[]{2});
+        assertTrue(table.version() > version);
+        assertTrue(table.isSlotAvailable(2));
+    }
+
+    @Test
+    void replaceCards_RemovesOnlyTokensOfSlot() {
+        fillAllSlotsAndMakeAvailable();
+        table.placeToken(0, 2);
+        table.placeToken(1, 2);
+        table.placeToken(1, 3);
+
+        table.replaceCards(new int[]{2}, new int[0], new int[0]);
+        assertFalse(table.playerHasToken(0, 2));
+        assertFalse(table.playerHasToken(1, 2));
+        assertTrue(table.playerHasToken(1, 3));
+        assertEquals(0, table.countTokens(0));
+        assertEquals(1, table.countTokens(1));
+    }
+
+    @Test
+    void placeAndRemoveCard_TracksSetsOnTable() {
+        table = createTableWithRealUtil();
+
+        // cards 0, 1 and 2 differ only in their last feature, card 4 completes a set with 0 and 8
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.placeCard(4, 2);
+        assertEquals(0, table.countSets());
+
+        table.placeCard(2, 3);
+        assertEquals(1, table.countSets());
+        table.placeCard(8, 4);
+        assertEquals(2, table.countSets());
+
+        table.replaceCards(new int[]{0}, new int[0], new int[0]);
+        assertEquals(0, table.countSets());
+    }
+
+    @Test
+    void placeCardsAndClear() {
+        fillSomeSlots();
+        long version = table.version();
+        assertArrayEquals(new int[]{0, 3}, table.placeCards(new int[]{7, 9}, new int[]{0, 3}));
+        assertEquals(version + 1, table.version());
+        assertEquals(4, table.countCards());
+        assertEquals(3, (int) cardToSlot[9]);
+
+        table.setTableAvailable(true);
+        assertTrue(table.placeToken(0, 0));
+        assertTrue(table.placeToken(1, 3));
+
+        assertArrayEquals(new int[]{0, 1, 2, 3}, table.clear());
+        assertEquals(0, table.countCards());
+        assertEquals(null, cardToSlot[7]);
+        assertEquals(0, table.countTokens(0));
+        assertEquals(0, table.countTokens(1));
+        assertFalse(table.isSlotAvailable(0));
+        assertArrayEquals(new int[0], table.clear());
+    }
+
+    @Test
+    void placeCards_TracksSetsOnTable() {
+        table = createTableWithRealUtil();
+
+        // the sets {0, 1, 2} and {0, 4, 8} share card 0, each one must be counted once
+        table.placeCard(1, 0);
+        table.placeCards(new int[]{0, 2, 4, 8}, new int[]{1, 2, 3, 4});
+        assertEquals(2, table.countSets());
+    }
+
+    @Test
+    void getClaimForPlayer_ReadsCardsAndSlotsAtOneVersion() {
+        fillAllSlotsAndMakeAvailable();
+        int[] cards = new int[3];
+        int[] slots = new int[3];
+        table.placeToken(0, 1);
+        table.placeToken(0, 3);
+        assertEquals(-1, table.getClaimForPlayer(0, cards, slots));
+
+        table.placeToken(0, 2);
+        assertEquals(table.version(), table.getClaimForPlayer(0, cards, slots));
+        assertArrayEquals(new int[]{1, 2, 3}, cards);
+        assertArrayEquals(new int[]{1, 2, 3}, slots);
+    }
+
+    @Test
+    void replaceCards_RemovesCardsAndTokens() {
+        fillAllSlotsAndMakeAvailable();
+        table.placeToken(0, 1);
+        table.placeToken(0, 2);
+        table.placeToken(1, 2);
+        table.placeToken(1, 3);
+
+        slotToCard[2] = null;
+        cardToSlot[2] = null;
+        assertArrayEquals(new int[]{1}, table.replaceCards(new int[]{1, 2}, new int[0], new int[0]));
+        assertEquals(null, slotToCard[1]);
+        assertEquals(null, cardToSlot[1]);
+        assertFalse(table.playerHasToken(0, 1));
+        assertFalse(table.playerHasToken(1, 2));
+        assertTrue(table.playerHasToken(1, 3));
+        assertFalse(table.isSlotAvailable(2));
+        assertTrue(table.isSlotAvailable(3));
+    }
+
+    @Test
+    void replaceCards_RefillsInTheSameTransaction() {
+        fillAllSlotsAndMakeAvailable();
+        table.placeToken(0, 1);
+        long version = table.version();
+
+        assertArrayEquals(new int[]{1, 2}, table.replaceCards(new int[]{1, 2}, new int[]{20}, new int[]{2}));
+        assertEquals(version + 1, table.version());
+        TableSnapshot snapshot = table.snapshot();
+        assertEquals(TableSnapshot.NO_CARD, snapshot.cardAt(1));
+        assertEquals(20, snapshot.cardAt(2));
+        assertFalse(snapshot.playerHasToken(0, 1));
+        assertFalse(table.isSlotAvailable(1));
+        assertTrue(table.isSlotAvailable(2));
+    }
+
+    @Test
+    void snapshot_IsCachedUntilTheTableChanges() {
+        TableSnapshot empty = table.snapshot();
+        assertSame(empty, table.snapshot());
+        assertEquals(TableSnapshot.NO_CARD, empty.cardAt(0));
+
+        table.placeCards(new int[]{7, 9}, new int[]{0, 3});
+        table.setTableAvailable(true);
+        TableSnapshot placed = table.snapshot();
+        assertNotSame(empty, placed);
+        assertSame(placed, table.snapshot());
+        assertEquals(table.version(), placed.version());
+        assertEquals(9, placed.cardAt(3));
+        assertTrue(placed.isSlotAvailable(0));
+        assertFalse(placed.isSlotAvailable(1));
+
+        table.placeToken(1, 3);
+        TableSnapshot token = table.snapshot();
+        assertNotSame(placed, token);
+        assertSame(token, table.snapshot());
+        assertTrue(token.playerHasToken(1, 3));
+        assertFalse(placed.playerHasToken(1, 3));
+        assertEquals(1, token.countTokens(1));
+
+        table.clear();
+        assertEquals(0, table.snapshot().countTokens(1));
+        assertEquals(TableSnapshot.NO_CARD, table.snapshot().cardAt(3));
+        assertEquals(9, token.cardAt(3));
+    }
+
+    @Test
+    void getHints_CachedPerVersion() {
+        table = createTableWithRealUtil();
+
+        table.placeCards(new int[]{0, 1, 5, 2}, new int[]{3, 0, 1, 2});
+        List<HintEngine.Hint> hints = table.getHints();
+        assertEquals(1, hints.size());
+        assertArrayEquals(new int[]{0, 2, 3}, hints.get(0).slots());
+        // each card is listed with its slot: card 1 on slot 0, card 2 on slot 2 and card 0 on slot 3
+        assertArrayEquals(new int[]{1, 2, 0}, hints.get(0).cards());
+        assertEquals(2, hints.get(0).feature(1, 3));
+        assertEquals(0, hints.get(0).feature(2, 3));
+        assertSame(hints, table.getHints());
+
+        table.replaceCards(new int[]{3}, new int[0], new int[0]);
+        assertTrue(table.getHints().isEmpty());
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -123,6 +344,10 @@ class TableTest {
         @Override
         public void removeCard(int slot) {}
         @Override
+        public void placeCards(int[] cards, int[] slots) {}
+        @Override
+        public void removeCards(int[] slots) {}
+        @Override
         public void setCountdown(long millies, boolean warn) {}
         @Override
         public void setElapsed(long millies) {}
@@ -158,11 +383,34 @@ class TableTest {
             return false;
         }
 
+        @Override
+        public boolean testSet(int a, int b, int c) {
+            return false;
+        }
+
+        @Override
+        public boolean testSet(int[] cards, int offset) {
+            return false;
+        }
+
         @Override
         public List<int[]> findSets(List<Integer> deck, int count) {
             return null;
         }
 
+        @Override
+        public List<int[]> findSetsWith(int card, List<Integer> deck, int count) {
+            return new LinkedList<>();
+        }
+
+        @Override
+        public void forEachSet(List<Integer> deck, SetConsumer action) {}
+
+        @Override
+        public Stream<int[]> streamSets(List<Integer> deck) {
+            return Stream.empty();
+        }
+
         @Override
         public void spin() {}
     }